@@ -0,0 +1,279 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.cwru.sepia.agent.planner.actions.StripsAction;
+import edu.cwru.sepia.agent.planner.actions.StripsActionType;
+import edu.cwru.sepia.agent.planner.actions.TripAction;
+import edu.cwru.sepia.environment.model.state.State;
+
+/**
+ * Times the planner's hot paths so a slower build shows up before it is
+ * rolled out. For every scenario it measures generateChildren, the heuristic,
+ * apply for each kind of STRIPS action, TripAction.expand and a whole A*
+ * search, and reports both throughput (operations per second) and allocation
+ * (bytes per operation).
+ *
+ * The arguments are scenarios, written as described in Scenario: a SEPIA
+ * configuration file that runs the PlannerAgent or a map file followed by
+ * :wood:gold:buildPeasants. With no scenarios the midasSmall, midasLarge and
+ * rc_3m5t scenarios in Data are run. key=value arguments are options for the
+ * whole search (see Planner.setOption), e.g. timeLimit=5000. A scenario the
+ * search finds no plan for gets how the search ended on that line instead of
+ * a measurement.
+ *
+ * Each measurement is a few warmup rounds, whose results are thrown away so
+ * the JIT has settled, followed by the measured rounds. A round lasts
+ * benchmark.roundMillis milliseconds (a system property, 200 by default).
+ *
+ * bench is a source folder of the Eclipse project, so Eclipse builds this
+ * into bin along with the planner. Without Eclipse, compile both into a
+ * directory of your own and run it from the project directory:
+ *
+ * mkdir -p /tmp/planner-bench
+ *
+ * javac -cp lib/SEPIA.jar -d /tmp/planner-bench $(find src bench -name '*.java')
+ *
+ * java -cp /tmp/planner-bench:lib/SEPIA.jar edu.cwru.sepia.agent.planner.PlannerBenchmark
+ *
+ * @author Anna He
+ *
+ */
+public class PlannerBenchmark {
+
+	private static final String[] DEFAULT_SCENARIOS = { "Data/midasSmall.xml", "Data/midasLarge.xml",
+			"Data/rc_3m5t.xml:600:600:true" };
+
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int MEASURED_ROUNDS = 10;
+	// how many states reachable from the start the per-state operations
+	// cycle through
+	private static final int SAMPLE_STATES = 500;
+	// how many more states apply is timed on, reachable from the start with
+	// the gold for a peasant and from the start with TripActions
+	private static final int EXTRA_SAMPLE_STATES = 100;
+	// most trips a TripAction makes in the extra states
+	private static final int MACRO_TRIPS = 2;
+
+	private static final long ROUND_NANOS = Long.getLong("benchmark.roundMillis", 200) * 1000000L;
+
+	// everything an operation returns is added in here, so the JIT can't
+	// throw the work away
+	private static long sink = 0;
+
+	/**
+	 * One timed operation
+	 */
+	private interface Operation {
+		/**
+		 * @param i
+		 *            how many times the operation ran before in this round
+		 * @return anything that depends on the work done
+		 */
+		long run(int i);
+	}
+
+	public static void main(String[] args) throws Exception {
+		Planner planner = new Planner();
+		List<String> scenarios = new ArrayList<String>();
+
+		for (String arg : args) {
+			String[] keyValue = arg.split("=", 2);
+			if (keyValue.length != 2) {
+				scenarios.add(arg);
+				continue;
+			}
+
+			try {
+				if (!planner.setOption(keyValue[0].trim(), keyValue[1].trim())) {
+					System.err.println("Ignoring unknown option " + keyValue[0]);
+				}
+			} catch (IllegalArgumentException e) {
+				System.err.println("Ignoring option " + arg + ", bad value");
+			}
+		}
+
+		if (scenarios.isEmpty()) {
+			scenarios = Arrays.asList(DEFAULT_SCENARIOS);
+		}
+
+		System.out.println(String.format("%-24s %-18s %14s %10s %14s", "scenario", "operation", "ops/s", "error",
+				"bytes/op"));
+
+		for (String scenario : scenarios) {
+			run(Scenario.parse(scenario), planner);
+		}
+
+		System.err.println("(checksum " + sink + ")");
+	}
+
+	private static void run(Scenario scenario, Planner planner) throws IOException {
+		State.StateView map = Planner.loadMap(scenario.getMapFile());
+		GameState start = new GameState(map, 0, scenario.getRequiredGold(), scenario.getRequiredWood(),
+				scenario.getBuildPeasants());
+		List<GameState> samples = sampleStates(start, SAMPLE_STATES);
+
+		measure(scenario, "generateChildren", i -> samples.get(i % samples.size()).generateChildren().size());
+
+		measure(scenario, "heuristic",
+				i -> Double.doubleToRawLongBits(samples.get(i % samples.size()).computeHeuristic()));
+
+		// the samples never get the gold to build a peasant or make trips, so
+		// apply is also timed on states that do: the start with 400 more
+		// gold, building allowed, and the start with TripActions
+		GameState rich = new GameState(map, 0, scenario.getRequiredGold() + 400, scenario.getRequiredWood(), true);
+		rich.setMyGold(rich.getMyGold() + 400);
+
+		List<GameState> applySamples = new ArrayList<GameState>(samples);
+		applySamples.addAll(sampleStates(rich, EXTRA_SAMPLE_STATES));
+		applySamples.addAll(sampleStates(start.withMacroTrips(MACRO_TRIPS), EXTRA_SAMPLE_STATES));
+
+		// every action done by a child of those, paired with the state it is
+		// applied to
+		Map<StripsActionType, List<GameState>> applyStates = new EnumMap<StripsActionType, List<GameState>>(
+				StripsActionType.class);
+		Map<StripsActionType, List<StripsAction>> applyActions = new EnumMap<StripsActionType, List<StripsAction>>(
+				StripsActionType.class);
+
+		for (GameState sample : applySamples) {
+			for (GameState child : sample.generateChildren()) {
+				for (StripsAction action : child.getParentAction()) {
+					if (!applyStates.containsKey(action.getAction())) {
+						applyStates.put(action.getAction(), new ArrayList<GameState>());
+						applyActions.put(action.getAction(), new ArrayList<StripsAction>());
+					}
+					applyStates.get(action.getAction()).add(sample);
+					applyActions.get(action.getAction()).add(action);
+				}
+			}
+		}
+
+		for (StripsActionType type : applyStates.keySet()) {
+			List<GameState> states = applyStates.get(type);
+			List<StripsAction> actions = applyActions.get(type);
+
+			measure(scenario, "apply " + type, i -> {
+				int pair = i % states.size();
+				return actions.get(pair).apply(states.get(pair)).getZobrist();
+			});
+		}
+
+		// the trips were applied when their children were built, so they can
+		// be expanded
+		List<StripsAction> trips = applyActions.get(StripsActionType.TRIP);
+		if (trips != null) {
+			measure(scenario, "expand TRIP", i -> ((TripAction) trips.get(i % trips.size())).expand().size());
+		}
+
+		// a search that finds no plan is reported instead of timed, it isn't
+		// what the other scenarios measure
+		PlanResult result = planner.plan(map, scenario.getRequiredGold(), scenario.getRequiredWood(),
+				scenario.getBuildPeasants());
+
+		if (!result.isFound()) {
+			System.out.println(String.format("%-24s %-18s %14s", scenario.getName(), "AstarSearch",
+					result.getStatus()));
+			return;
+		}
+
+		measure(scenario, "AstarSearch", i -> planner.plan(map, scenario.getRequiredGold(),
+				scenario.getRequiredWood(), scenario.getBuildPeasants()).getCost());
+	}
+
+	/**
+	 * @param start
+	 * @param count
+	 * @return the first count states reachable from start, breadth first
+	 */
+	private static List<GameState> sampleStates(GameState start, int count) {
+		List<GameState> samples = new ArrayList<GameState>();
+		Set<GameState> seen = new HashSet<GameState>();
+		ArrayDeque<GameState> queue = new ArrayDeque<GameState>();
+
+		queue.add(start);
+		seen.add(start);
+
+		while (!queue.isEmpty() && samples.size() < count) {
+			GameState state = queue.poll();
+			samples.add(state);
+
+			for (GameState child : state.generateChildren()) {
+				if (seen.add(child)) {
+					queue.add(child);
+				}
+			}
+		}
+
+		return samples;
+	}
+
+	/**
+	 * Runs the warmup and measured rounds of one operation and prints a line
+	 * with the results
+	 */
+	private static void measure(Scenario scenario, String name, Operation operation) {
+		double[] opsPerSecond = new double[MEASURED_ROUNDS];
+		long totalOps = 0;
+		long totalBytes = 0;
+
+		for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+			long bytesBefore = allocatedBytes();
+			long start = System.nanoTime();
+			long elapsed;
+			int ops = 0;
+
+			do {
+				sink += operation.run(ops);
+				ops++;
+				elapsed = System.nanoTime() - start;
+			} while (elapsed < ROUND_NANOS);
+
+			long bytes = allocatedBytes() - bytesBefore;
+
+			if (round >= WARMUP_ROUNDS) {
+				opsPerSecond[round - WARMUP_ROUNDS] = ops * 1e9 / elapsed;
+				totalOps += ops;
+				totalBytes += bytes;
+			}
+		}
+
+		double mean = 0;
+		for (double value : opsPerSecond) {
+			mean += value;
+		}
+		mean /= MEASURED_ROUNDS;
+
+		double variance = 0;
+		for (double value : opsPerSecond) {
+			variance += (value - mean) * (value - mean);
+		}
+		double error = Math.sqrt(variance / (MEASURED_ROUNDS - 1)) / mean * 100;
+
+		String bytesPerOp = allocatedBytes() < 0 ? "n/a" : String.format("%.0f", (double) totalBytes / totalOps);
+
+		System.out.println(String.format("%-24s %-18s %14.1f %9.1f%% %14s", scenario.getName(), name, mean, error,
+				bytesPerOp));
+	}
+
+	/**
+	 * @return bytes allocated by this thread so far, -1 if the JVM can't tell
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
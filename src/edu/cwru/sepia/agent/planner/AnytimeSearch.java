@@ -0,0 +1,166 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Anytime weighted A*, restarting with a lower weight after every plan. Each
+ * round is A* ordered by g + weight * h instead of g + h, which goes for the
+ * goal much more directly and finds a plan that costs at most weight times
+ * the cheapest one. Every plan found is handed to the listener right away,
+ * then the search starts over with the weight lowered by weightStep, down to
+ * 1. A round only keeps states that could still lead to a cheaper plan than
+ * the best one so far (g + h below its cost, the heuristic being
+ * admissible), so it either finds a cheaper plan or proves there is none. The
+ * plan of the round with weight 1, or of a round that ran out of states, is
+ * the cheapest.
+ *
+ * The budget covers all rounds. When it runs out the best plan so far is
+ * returned, or a partial plan if there is none yet.
+ *
+ * The weighted order doesn't fit GameState.compareTo, so the rounds use a
+ * PriorityQueue. A state reached more cheaply is added again rather than
+ * moved, and the stale copy is skipped when it comes off the queue.
+ *
+ * @author Anna He
+ *
+ */
+class AnytimeSearch {
+
+	private final int maxChildren;
+	private final double weight;
+	private final double weightStep;
+	// the budget that ran out, null until one does
+	private PlanStatus outOfBudget = null;
+
+	/**
+	 * @param maxChildren
+	 *            see Planner.setMaxChildren
+	 * @param weight
+	 *            weight of the first round, at least 1
+	 * @param weightStep
+	 *            how much the weight goes down each round, 0 to go straight
+	 *            to 1 after the first plan
+	 */
+	AnytimeSearch(int maxChildren, double weight, double weightStep) {
+		this.maxChildren = maxChildren;
+		this.weight = Math.max(1, weight);
+		this.weightStep = weightStep;
+	}
+
+	/**
+	 * @param startState
+	 * @param budget
+	 * @param listener
+	 *            called with every plan cheaper than the ones before, on the
+	 *            searching thread. May be null.
+	 * @return the cheapest plan found, with the statistics of all rounds
+	 */
+	PlanResult search(GameState startState, SearchBudget budget, Consumer<PlanResult> listener) {
+		SearchStatistics statistics = new SearchStatistics();
+		statistics.start();
+
+		GameState best = null;
+		double roundWeight = weight;
+
+		while (true) {
+			GameState goal = round(startState, roundWeight, best, budget, statistics);
+
+			if (goal != null) {
+				best = goal;
+				if (listener != null) {
+					listener.accept(new PlanResult(Planner.getPath(best), best, statistics.snapshot()));
+				}
+			}
+
+			// no plan cheaper than best exists, or the budget ran out
+			if (goal == null || roundWeight == 1) {
+				break;
+			}
+
+			roundWeight = weightStep > 0 ? Math.max(1, roundWeight - weightStep) : 1;
+		}
+
+		statistics.stop();
+		if (best == null && outOfBudget != null) {
+			return budget.partial(outOfBudget, statistics);
+		}
+		return new PlanResult(best == null ? null : Planner.getPath(best), best, statistics);
+	}
+
+	/**
+	 * One weighted A* search
+	 *
+	 * @param startState
+	 * @param weight
+	 * @param incumbent
+	 *            best plan so far, null if none
+	 * @param budget
+	 * @param statistics
+	 * @return a goal cheaper than the incumbent, null if there is none or the
+	 *         budget ran out
+	 */
+	private GameState round(GameState startState, double weight, GameState incumbent, SearchBudget budget,
+			SearchStatistics statistics) {
+		double bound = incumbent == null ? Double.POSITIVE_INFINITY : incumbent.getMyCost();
+
+		// ties go to the state closer to the goal
+		PriorityQueue<GameState> openList = new PriorityQueue<GameState>(
+				Comparator.comparingDouble((GameState state) -> state.getMyCost() + weight * state.heuristic())
+						.thenComparingDouble(GameState::heuristic));
+		// cheapest cost each state was reached with this round
+		Map<GameState, Integer> reached = new HashMap<GameState, Integer>();
+
+		openList.add(startState);
+		reached.put(startState, startState.getMyCost());
+
+		while (!openList.isEmpty()) {
+			GameState curState = openList.poll();
+
+			if (reached.get(curState) < curState.getMyCost() || curState.getCost() >= bound) {
+				// reached more cheaply since it was added, or the incumbent
+				// got at least as cheap
+				continue;
+			}
+
+			statistics.expanded();
+
+			if (curState.isGoal()) {
+				return curState;
+			}
+
+			outOfBudget = budget.spend(curState);
+			if (outOfBudget != null) {
+				return null;
+			}
+
+			Iterator<GameState> children = curState.successors(maxChildren);
+
+			while (children.hasNext()) {
+				GameState child = children.next();
+				statistics.generated(1);
+
+				if (child.getCost() >= bound) {
+					continue;
+				}
+
+				Integer cost = reached.get(child);
+
+				if (cost == null || child.getMyCost() < cost) {
+					if (cost != null) {
+						statistics.decreasedKey();
+					}
+					reached.put(child, child.getMyCost());
+					openList.add(child);
+				}
+			}
+			statistics.openListSize(openList.size());
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,137 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.Arrays;
+
+import edu.cwru.sepia.util.Direction;
+
+/**
+ * Where a peasant should stand to work at a map object, for every tile the
+ * peasant could be coming from. A move target is a forest or goldmine (by its
+ * resource id) or the townhall (target getTownHallTarget()).
+ *
+ * The table is filled once when the PlanningMap is built, so a MoveAction
+ * looks its destination up instead of scanning the target's neighbours and
+ * comparing distances for every child. For each (origin tile, target) pair it
+ * holds the chosen approach tile and the number of steps to get there.
+ *
+ * Each target gets one breadth first search over the 8-connected grid,
+ * started from all of its free neighbours at once and treating forests,
+ * goldmines and the townhall as walls. Every tile reached ends up labelled
+ * with the nearest approach tile and its true walking distance to it, so move
+ * costs are exact without doing any pathfinding during the search.
+ *
+ * @author Anna He
+ *
+ */
+public class ApproachTable {
+
+	private final int xExtent;
+	private final int yExtent;
+	private final int townHallTarget;
+
+	// approachTile[target][origin] is the tile index of the tile to stand on,
+	// -1 if the target can't be reached from origin
+	private final int[][] approachTile;
+	// travelCost[target][origin] is the steps from origin to the approach tile
+	private final int[][] travelCost;
+	// one shared Position per tile so lookups don't allocate
+	private final Position[] tiles;
+
+	ApproachTable(PlanningMap map) {
+		this.xExtent = map.getXExtent();
+		this.yExtent = map.getYExtent();
+		this.townHallTarget = map.getResourceCount();
+
+		int tileCount = xExtent * yExtent;
+		this.tiles = new Position[tileCount];
+		for (int y = 0; y < yExtent; y++) {
+			for (int x = 0; x < xExtent; x++) {
+				tiles[y * xExtent + x] = new Position(x, y);
+			}
+		}
+
+		int targetCount = townHallTarget + (map.getTownHall() == null ? 0 : 1);
+		this.approachTile = new int[targetCount][];
+		this.travelCost = new int[targetCount][];
+
+		for (int target = 0; target < targetCount; target++) {
+			Position targetPosition = target == townHallTarget ? map.getTownHall().getPosition()
+					: map.getResource(target).getPosition();
+			approachTile[target] = new int[tileCount];
+			travelCost[target] = new int[tileCount];
+			fill(map, targetPosition, approachTile[target], travelCost[target]);
+		}
+	}
+
+	/**
+	 * Breadth first search out from the free neighbours of the target. On a
+	 * tie the neighbour that comes first in Direction order wins.
+	 */
+	private void fill(PlanningMap map, Position target, int[] approach, int[] cost) {
+		Arrays.fill(approach, -1);
+
+		int[] queue = new int[tiles.length];
+		int head = 0;
+		int tail = 0;
+
+		for (Direction direction : Direction.values()) {
+			int x = target.x + direction.xComponent();
+			int y = target.y + direction.yComponent();
+			int tile = y * xExtent + x;
+			if (!map.isBlocked(x, y) && approach[tile] < 0) {
+				approach[tile] = tile;
+				cost[tile] = 0;
+				queue[tail++] = tile;
+			}
+		}
+
+		while (head < tail) {
+			int tile = queue[head++];
+			Position from = tiles[tile];
+
+			for (Direction direction : Direction.values()) {
+				int x = from.x + direction.xComponent();
+				int y = from.y + direction.yComponent();
+				if (map.isBlocked(x, y)) {
+					continue;
+				}
+
+				int next = y * xExtent + x;
+				if (approach[next] < 0) {
+					approach[next] = approach[tile];
+					cost[next] = cost[tile] + 1;
+					queue[tail++] = next;
+				}
+			}
+		}
+	}
+
+	public int getTownHallTarget() {
+		return townHallTarget;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 *            where the peasant is
+	 * @param target
+	 * @return the tile the peasant should move to, null if the target can't be
+	 *         reached
+	 */
+	public Position getApproachTile(int x, int y, int target) {
+		int tile = approachTile[target][y * xExtent + x];
+		return tile < 0 ? null : tiles[tile];
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 *            where the peasant is
+	 * @param target
+	 * @return the number of steps to the approach tile, only meaningful if
+	 *         getApproachTile is not null
+	 */
+	public int getTravelCost(int x, int y, int target) {
+		return travelCost[target][y * xExtent + x];
+	}
+}
@@ -0,0 +1,293 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Plans a whole list of scenarios at once, each one its own search, on a pool
+ * with a fixed number of threads.
+ *
+ * The searches share nothing that changes. Every map is read once and the
+ * start state read from it is kept; a scenario on that map searches from a
+ * copy with its own goal (GameState.withGoal). The copies share the map's
+ * PlanningMap, which is never changed after it is built, and the peasant and
+ * resource arrays, which a state copies before it writes to them. Everything
+ * else a search uses (its lists, its states, the heuristic caches on them)
+ * belongs to the thread running it.
+ *
+ * Run from the command line it takes a manifest file with one scenario per
+ * line (see Scenario, # starts a comment), an optional output file and
+ * key=value options: threads=n, and the Planner's own (see
+ * Planner.setOption). It writes one tab separated line per scenario, in
+ * manifest order, to the output file or to System.out.
+ *
+ * @author Anna He
+ *
+ */
+public class BatchPlanner {
+
+	/**
+	 * How one scenario of the batch went
+	 */
+	public static class Entry {
+		private final Scenario scenario;
+		// null if the scenario couldn't be planned at all
+		private final PlanResult result;
+		// why there is no result, null if there is one
+		private final String error;
+		// from the task starting to it finishing, including reading the map
+		private final double millis;
+
+		Entry(Scenario scenario, PlanResult result, String error, double millis) {
+			this.scenario = scenario;
+			this.result = result;
+			this.error = error;
+			this.millis = millis;
+		}
+
+		public Scenario getScenario() {
+			return scenario;
+		}
+
+		public PlanResult getResult() {
+			return result;
+		}
+
+		public String getError() {
+			return error;
+		}
+
+		public double getMillis() {
+			return millis;
+		}
+	}
+
+	private final Planner planner;
+	private final int threads;
+
+	// start state of every map read so far, by map file
+	private final ConcurrentHashMap<String, GameState> startStates = new ConcurrentHashMap<String, GameState>();
+
+	/**
+	 * @param planner
+	 *            does every search, its settings must not change during a
+	 *            batch
+	 * @param threads
+	 *            most searches to run at the same time
+	 */
+	public BatchPlanner(Planner planner, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("A batch needs at least one thread, got " + threads);
+		}
+
+		this.planner = planner;
+		this.threads = threads;
+	}
+
+	/**
+	 * Plans every scenario and waits for all of them
+	 *
+	 * @param scenarios
+	 * @return one entry per scenario, in the same order
+	 */
+	public List<Entry> planAll(List<Scenario> scenarios) {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+
+		try {
+			List<ForkJoinTask<Entry>> tasks = new ArrayList<ForkJoinTask<Entry>>();
+			for (Scenario scenario : scenarios) {
+				tasks.add(pool.submit(() -> planOne(scenario)));
+			}
+
+			List<Entry> entries = new ArrayList<Entry>();
+			for (ForkJoinTask<Entry> task : tasks) {
+				entries.add(task.join());
+			}
+			return entries;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private Entry planOne(Scenario scenario) {
+		long start = System.nanoTime();
+
+		try {
+			PlanResult result = planner.search(startState(scenario.getMapFile())
+					.withGoal(scenario.getRequiredGold(), scenario.getRequiredWood(), scenario.getBuildPeasants()));
+			return new Entry(scenario, result, null, (System.nanoTime() - start) / 1e6);
+		} catch (IOException | RuntimeException e) {
+			return new Entry(scenario, null, e.getMessage(), (System.nanoTime() - start) / 1e6);
+		}
+	}
+
+	/**
+	 * The first thread to ask for a map reads it, any others asking for it
+	 * meanwhile wait for that instead of reading it again
+	 *
+	 * @param mapFile
+	 * @return the start state on the map, without a goal
+	 * @throws IOException
+	 *             if the map can't be read
+	 */
+	private GameState startState(String mapFile) throws IOException {
+		try {
+			return startStates.computeIfAbsent(mapFile, file -> {
+				try {
+					return new GameState(Planner.loadMap(file), 0, 0, 0, false);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Writes a header and one tab separated line per entry
+	 *
+	 * @param entries
+	 * @param out
+	 */
+	public static void write(List<Entry> entries, PrintStream out) {
+		out.println("scenario\tmap\twood\tgold\tbuildPeasants\tstatus\tactions\tcost\texpanded\tgenerated\t"
+				+ "searchMillis\ttotalMillis\terror");
+
+		for (Entry entry : entries) {
+			Scenario scenario = entry.getScenario();
+			PlanResult result = entry.getResult();
+
+			StringBuilder line = new StringBuilder();
+			line.append(scenario.getName()).append('\t');
+			line.append(scenario.getMapFile()).append('\t');
+			line.append(scenario.getRequiredWood()).append('\t');
+			line.append(scenario.getRequiredGold()).append('\t');
+			line.append(scenario.getBuildPeasants()).append('\t');
+
+			if (result == null) {
+				line.append("ERROR\t\t\t\t\t\t");
+			} else {
+				SearchStatistics statistics = result.getStatistics();
+				line.append(result.getStatus()).append('\t');
+				line.append(result.getPlan() != null ? result.getPlan().size() : 0).append('\t');
+				line.append(result.getCost()).append('\t');
+				line.append(statistics.getNodesExpanded()).append('\t');
+				line.append(statistics.getNodesGenerated()).append('\t');
+				line.append(String.format("%.1f", statistics.getElapsedMillis())).append('\t');
+			}
+
+			line.append(String.format("%.1f", entry.getMillis())).append('\t');
+			line.append(entry.getError() == null ? "" : entry.getError());
+			out.println(line);
+		}
+	}
+
+	/**
+	 * @param manifestFile
+	 *            one scenario per line, blank lines and # comments are skipped
+	 * @return the scenarios in the order they are listed
+	 * @throws IOException
+	 *             if the manifest or one of the scenarios can't be read
+	 */
+	public static List<Scenario> readManifest(String manifestFile) throws IOException {
+		List<Scenario> scenarios = new ArrayList<Scenario>();
+		BufferedReader reader = new BufferedReader(new FileReader(manifestFile));
+
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				int comment = line.indexOf('#');
+				if (comment >= 0) {
+					line = line.substring(0, comment);
+				}
+
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+
+				try {
+					scenarios.add(Scenario.parse(line));
+				} catch (IOException e) {
+					throw new IOException(manifestFile + " line " + lineNumber + ": " + e.getMessage(), e);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		return scenarios;
+	}
+
+	public static void main(String[] args) {
+		Planner planner = new Planner();
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<String> files = new ArrayList<String>();
+
+		for (String arg : args) {
+			String[] keyValue = arg.split("=", 2);
+
+			if (keyValue.length != 2) {
+				files.add(arg);
+				continue;
+			}
+
+			try {
+				if (keyValue[0].trim().equals("threads")) {
+					threads = Integer.parseInt(keyValue[1].trim());
+				} else if (!planner.setOption(keyValue[0].trim(), keyValue[1].trim())) {
+					System.err.println("Ignoring unknown option " + keyValue[0]);
+				}
+			} catch (IllegalArgumentException e) {
+				System.err.println("Ignoring option " + arg + ", bad value");
+			}
+		}
+
+		if (files.isEmpty() || files.size() > 2) {
+			System.err.println("Usage: BatchPlanner manifest [output] [threads=n] [planner options]");
+			System.exit(1);
+		}
+
+		List<Scenario> scenarios;
+		try {
+			scenarios = readManifest(files.get(0));
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		long start = System.nanoTime();
+		List<Entry> entries = new BatchPlanner(planner, threads).planAll(scenarios);
+		double millis = (System.nanoTime() - start) / 1e6;
+
+		PrintStream out = System.out;
+		if (files.size() == 2) {
+			try {
+				out = new PrintStream(files.get(1));
+			} catch (FileNotFoundException e) {
+				System.err.println("Could not write " + files.get(1) + ", writing to System.out");
+			}
+		}
+
+		write(entries, out);
+		out.flush();
+		if (out != System.out) {
+			out.close();
+		}
+
+		System.err.println(String.format("Planned %d scenarios on %d threads in %.1fms", entries.size(), threads,
+				millis));
+	}
+}
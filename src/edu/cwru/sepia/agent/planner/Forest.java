@@ -10,10 +10,13 @@ package edu.cwru.sepia.agent.planner;
 public class Forest extends MapObject {
 
 	private int resourceQuantity;
+	// index of this resource in the PlanningMap
+	private int resourceID;
 
-	public Forest(boolean isEmpty, int quantity, Position pos) {
-		super(isEmpty, "FOREST", pos);
+	public Forest(boolean isEmpty, int quantity, Position pos, int resourceID) {
+		super(isEmpty, MapObjectType.FOREST, pos);
 		this.resourceQuantity = quantity;
+		this.resourceID = resourceID;
 	}
 
 	public void setResourceQuantity(int newQuantity) {
@@ -24,4 +27,8 @@ public class Forest extends MapObject {
 		return resourceQuantity;
 	}
 
+	public int getResourceID() {
+		return resourceID;
+	}
+
 }
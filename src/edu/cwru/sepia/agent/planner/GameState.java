@@ -1,6 +1,8 @@
 package edu.cwru.sepia.agent.planner;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import edu.cwru.sepia.agent.planner.actions.CreateAction;
@@ -8,9 +10,12 @@ import edu.cwru.sepia.agent.planner.actions.DepositAction;
 import edu.cwru.sepia.agent.planner.actions.HarvestAction;
 import edu.cwru.sepia.agent.planner.actions.MoveAction;
 import edu.cwru.sepia.agent.planner.actions.StripsAction;
-import edu.cwru.sepia.environment.model.state.ResourceNode;
+import edu.cwru.sepia.agent.planner.actions.StripsActionType;
+import edu.cwru.sepia.agent.planner.actions.TripAction;
+import edu.cwru.sepia.environment.model.state.ResourceType;
 import edu.cwru.sepia.environment.model.state.State;
 import edu.cwru.sepia.environment.model.state.Unit;
+import edu.cwru.sepia.util.Direction;
 
 /**
  * This class is used to represent the state of the game after applying one of
@@ -25,39 +30,75 @@ import edu.cwru.sepia.environment.model.state.Unit;
  * Implement the methods provided and add any other methods and member variables
  * you need.
  *
- * Some useful API calls for the state view are
- *
- * state.getXExtent() and state.getYExtent() to get the map size
- *
  * I recommend storing the actions that generated the instance of the GameState
  * in this class using whatever class/structure you use to represent actions.
+ *
+ * A search creates a lot of these, so a state only stores what can change.
+ * The map itself (resource positions, the townhall, the grid) lives in a
+ * PlanningMap shared by every state, so only the initial state reads the
+ * StateView. The peasants are packed into an int[] and the amount left at
+ * each resource is a ResourceTable indexed by resource id. A child shares both
+ * with its parent and copies only what it changes, so most children cost a
+ * couple of small arrays at most.
  */
 public class GameState implements Comparable<GameState> {
 
+	// Layout of one peasant in the peasants array. A peasant's unit id is its
+	// index, so peasant i starts at i * PEASANT_SIZE
+	private static final int PEASANT_X = 0;
+	private static final int PEASANT_Y = 1;
+	private static final int PEASANT_CARGO = 2;
+	private static final int PEASANT_AMOUNT = 3;
+	private static final int PEASANT_SIZE = 4;
+
+	// PEASANT_CARGO of a peasant that isn't carrying anything. Otherwise it is
+	// the ResourceType's ordinal + 1
+	private static final int CARGO_NONE = 0;
+
 	// The Action done to get to this state
 	private ArrayList<StripsAction> parentAction = null;
 	// The state of the parent prior to the parent Action
 	private GameState parentState = null;
 
-	private ArrayList<Peasant> peasants;
-	private ArrayList<Forest> forests;
-	private ArrayList<GoldMine> goldMines;
-	private TownHall townHall;
+	// Everything about the map that can't change while planning
+	private final PlanningMap map;
+
+	// Packed peasant fields, see PEASANT_X etc. Shared with the parent until
+	// this state changes a peasant
+	private int[] peasants;
+	private boolean ownsPeasants;
+	// Amount left at every forest and goldmine, indexed by resource id. A
+	// persistent table, so a harvest only copies the chunk it touches and the
+	// rest stays shared with every other state
+	private ResourceTable resourceAmounts;
 
 	private int goalWood;
 	private int goalGold;
 	private int myWood = 0;
 	private int myGold = 0;
-	private int totalWoodOnMap = 0;
-	private int totalGoldOnMap = 0;
 	private boolean buildPeasants = false;
+	// most round trips one TripAction bundles, 0 to plan with single actions
+	// only
+	private int macroTrips = 0;
 
-	private int totalFoodOnMap = 0;
 	private int playerNum;
-	private State.StateView state;
 
+	// Time from the start of planning to this state. Peasants act in
+	// parallel, so a joint action costs as much as its slowest part
 	private int myCost = 0;
 
+	// cached results of heuristic() and getCost(), NaN until first asked
+	// for. Cleared whenever the state changes, so the search and the open
+	// list get them once per state
+	private double heuristic = Double.NaN;
+	private double cost = Double.NaN;
+
+	// Zobrist hash of the world contents, see ZobristHash
+	private long zobrist = 0;
+
+	// Where this state sits in the OpenList heap, -1 if it is not on it
+	private int openIndex = -1;
+
 	/**
 	 * Construct a GameState from a stateview object. This is used to construct
 	 * the initial search node. All other nodes should be constructed from the
@@ -76,69 +117,99 @@ public class GameState implements Comparable<GameState> {
 	 */
 	public GameState(State.StateView state, int playernum, int requiredGold, int requiredWood, boolean buildPeasants) {
 
-		this.state = state;
 		this.playerNum = playernum;
 		this.goalWood = requiredWood;
 		this.goalGold = requiredGold;
 		this.buildPeasants = buildPeasants;
 
-		peasants = new ArrayList<Peasant>();
-		forests = new ArrayList<Forest>();
-		goldMines = new ArrayList<GoldMine>();
-
-		// extracts the resources from the state
-		for (ResourceNode.ResourceView resource : state.getAllResourceNodes()) {
-
-			if (resource.getType().toString().equals("TREE")) {
-				forests.add(new Forest(false, resource.getAmountRemaining(),
-						new Position(resource.getXPosition(), resource.getYPosition())));
-
-				totalWoodOnMap += resource.getAmountRemaining();
-
-			} else if (resource.getType().toString().equals("GOLD_MINE")) {
-				goldMines.add(new GoldMine(false, resource.getAmountRemaining(),
-						new Position(resource.getXPosition(), resource.getYPosition())));
-
-				totalGoldOnMap += resource.getAmountRemaining();
-			}
-		}
+		// extracts the resources and the townhall from the state
+		this.map = new PlanningMap(state, playernum);
+		this.resourceAmounts = ResourceTable.of(map.getInitialAmounts());
 
-		// extracts the units from the state
+		// extracts the peasants from the state
+		List<Unit.UnitView> peasantUnits = new ArrayList<Unit.UnitView>();
 		for (Unit.UnitView unit : state.getAllUnits()) {
 			if (unit.getTemplateView().getName().toLowerCase().equals("peasant")) {
-				this.peasants.add(new Peasant(null, 0, new Position(unit.getXPosition(), unit.getYPosition()),
-						this.peasants.size()));
-			}
-			if (unit.getTemplateView().getName().toLowerCase().equals("townhall")) {
-				this.townHall = new TownHall(true, unit, new Position(unit.getXPosition(), unit.getYPosition()));
+				peasantUnits.add(unit);
 			}
 		}
 
-		totalFoodOnMap = state.getSupplyCap(playernum);
+		this.peasants = new int[peasantUnits.size() * PEASANT_SIZE];
+		this.ownsPeasants = true;
+		for (int i = 0; i < peasantUnits.size(); i++) {
+			peasants[i * PEASANT_SIZE + PEASANT_X] = peasantUnits.get(i).getXPosition();
+			peasants[i * PEASANT_SIZE + PEASANT_Y] = peasantUnits.get(i).getYPosition();
+			peasants[i * PEASANT_SIZE + PEASANT_CARGO] = CARGO_NONE;
+		}
+
+		zobrist = computeZobrist();
 	}
 
-	public GameState(ArrayList<StripsAction> parentAction, GameState parentState, ArrayList<Peasant> peasant,
-			ArrayList<Forest> forests, ArrayList<GoldMine> goldMines, TownHall townHall, int goalWood, int goalGold,
-			int myWood, int myGold, int playerNum, State.StateView state, int costToState, int totalWoodOnMap,
-			int totalGoldOnMap, boolean buildPeasants, int totalFoodOnMap) {
+	/**
+	 * Creates a successor of parentState. The child starts out as an exact
+	 * copy of its parent, sharing the parent's arrays. The action producing
+	 * it then changes whatever it affects through the setters, which copy an
+	 * array the first time it is written.
+	 *
+	 * @param parentState
+	 * @param parentAction
+	 *            the action(s) taken from parentState
+	 * @param costToState
+	 *            how long the action(s) take, added to the parent's cost
+	 */
+	public GameState(GameState parentState, ArrayList<StripsAction> parentAction, int costToState) {
 
 		this.parentAction = parentAction;
 		this.parentState = parentState;
-		this.peasants = peasant;
-		this.forests = forests;
-		this.goldMines = goldMines;
-		this.townHall = townHall;
-		this.goalWood = goalWood;
-		this.goalGold = goalGold;
-		this.myWood = myWood;
-		this.myGold = myGold;
-		this.playerNum = playerNum;
-		this.state = state;
-		this.myCost = costToState;
-		this.totalWoodOnMap = totalWoodOnMap;
-		this.totalGoldOnMap = totalGoldOnMap;
-		this.buildPeasants = buildPeasants;
-		this.totalFoodOnMap = totalFoodOnMap;
+		this.map = parentState.map;
+		this.peasants = parentState.peasants;
+		this.ownsPeasants = false;
+		this.resourceAmounts = parentState.resourceAmounts;
+		this.goalWood = parentState.goalWood;
+		this.goalGold = parentState.goalGold;
+		this.myWood = parentState.myWood;
+		this.myGold = parentState.myGold;
+		this.buildPeasants = parentState.buildPeasants;
+		this.macroTrips = parentState.macroTrips;
+		this.playerNum = parentState.playerNum;
+		this.myCost = parentState.myCost + costToState;
+		this.zobrist = parentState.zobrist;
+	}
+
+	/**
+	 * The same world as this state with a different goal, as a new start of a
+	 * search. The map and the arrays are shared, so a batch of goals on one
+	 * map only reads the map once.
+	 *
+	 * @param requiredGold
+	 * @param requiredWood
+	 * @param buildPeasants
+	 * @return a state without a parent or cost
+	 */
+	public GameState withGoal(int requiredGold, int requiredWood, boolean buildPeasants) {
+		GameState start = new GameState(this, null, 0);
+		start.parentState = null;
+		start.myCost = 0;
+		start.goalGold = requiredGold;
+		start.goalWood = requiredWood;
+		start.buildPeasants = buildPeasants;
+		return start;
+	}
+
+	/**
+	 * The same state, except that an empty peasant's children are TripActions
+	 * instead of single moves and harvests, see getChildren
+	 *
+	 * @param macroTrips
+	 *            most trips one TripAction makes, 0 for no TripActions
+	 * @return a copy with the same parent and cost
+	 */
+	public GameState withMacroTrips(int macroTrips) {
+		GameState copy = new GameState(this, parentAction, 0);
+		copy.parentState = parentState;
+		copy.myCost = myCost;
+		copy.macroTrips = macroTrips;
+		return copy;
 	}
 
 	/**
@@ -165,736 +236,160 @@ public class GameState implements Comparable<GameState> {
 	 */
 	public List<GameState> generateChildren() {
 
-		List<ArrayList<GameState>> prelimaryChildren = new ArrayList<ArrayList<GameState>>();
-
-		for (int i = 0; i < this.peasants.size(); i++) {
-			ArrayList<GameState> children = getChildren(peasants.get(i));
-			if (children != null) {
-				prelimaryChildren.add(children);
-			}
-		}
-
-		return mergeChildren(prelimaryChildren);
-	}
-
-	/**
-	 * Once when there are more than 2 parent actions, we need to merge the
-	 * children
-	 * 
-	 * @param listChildren
-	 * @return
-	 */
-	private List<GameState> mergeChildren(List<ArrayList<GameState>> listChildren) {
-
-		if (listChildren.size() == 1) {
-			return listChildren.get(0);
-		}
-
 		List<GameState> children = new ArrayList<GameState>();
+		Iterator<GameState> successors = successors(0);
 
-		if (listChildren.size() == 2) {
-
-			for (GameState gamestate1 : listChildren.get(0)) {
-				for (GameState gamestate2 : listChildren.get(1)) {
-
-					GameState newChild = mergeState(gamestate1, gamestate2);
-					if (newChild != null) {
-						children.add(newChild);
-					}
-				}
-			}
-
-			for (int i = 0; i < children.size(); i++) {
-				Position p1 = children.get(i).getPeasants().get(0).getPosition();
-				Position p2 = children.get(i).getPeasants().get(1).getPosition();
-
-				// to avoid SEPIA collision (which is full of bugs) we avoid
-				// trying to go to the same place
-				if (p1.x == p2.x && p1.y == p2.y) {
-
-					if (children.size() > 1) {
-						children.remove(i);
-					}
-				}
-			}
-		}
-
-		else if (listChildren.size() == 3) {
-			for (GameState gamestate1 : listChildren.get(0)) {
-				for (GameState gamestate2 : listChildren.get(1)) {
-					for (GameState gamestate3 : listChildren.get(2)) {
-
-						GameState newChild = mergeState(gamestate1, gamestate2, gamestate3);
-						if (newChild != null) {
-							children.add(newChild);
-						}
-					}
-				}
-			}
-
-			for (int i = 0; i < children.size(); i++) {
-				Position p1 = children.get(i).getPeasants().get(0).getPosition();
-				Position p2 = children.get(i).getPeasants().get(1).getPosition();
-				Position p3 = children.get(i).getPeasants().get(2).getPosition();
-
-				// To avoid collision, avoid going to the same place
-				if ((p1.x == p2.x && p1.y == p2.y) || (p1.x == p3.x && p1.y == p3.y)
-						|| (p3.x == p2.x && p3.y == p2.y)) {
-
-					if (children.size() > 1) {
-						children.remove(i);
-					}
-				}
-			}
+		while (successors.hasNext()) {
+			children.add(successors.next());
 		}
 
 		return children;
-
 	}
 
 	/**
-	 * If action1 is to harvest from resource x, and action 2 and or action 3
-	 * moves towards that resource (to harvest eventually), we need to make sure
-	 * that resource has enough for 3 peasants
-	 * 
-	 * @param action1Name
-	 * @param action2Name
-	 * @param action3Name
-	 * @param action1
-	 * @param action2
-	 * @param action3
+	 * The successors of this state one at a time, where every peasant does one
+	 * action, for any number of peasants. Each peasant's own children are
+	 * built up front, but the joint actions combining them are only built as
+	 * the iterator reaches them, so a search that stops early (it found a
+	 * goal, or it has seen enough children) never pays for the rest.
+	 *
+	 * @param maxChildren
+	 *            the most successors to produce, 0 for all of them
 	 * @return
 	 */
-	private boolean collisionCheck(String action1Name, String action2Name, String action3Name, StripsAction action1,
-			StripsAction action2, StripsAction action3) {
-
-		MapObject a1 = null;
-		MapObject a2 = null;
-		MapObject a3 = null;
-
-		int r1 = 0;
-		int r2 = 0;
-		int r3 = 0;
-
-		if (action1Name.toString().equals("HARVEST")) {
-			HarvestAction harvest = (HarvestAction) action1;
-			a1 = harvest.getResource();
-
-			if (a1.getName().toString().equals("FOREST")) {
-				Forest forest = (Forest) a1;
-
-				for (Forest f : this.getForests()) {
-					if (f.getPosition().x == forest.getPosition().x && f.getPosition().y == forest.getPosition().y) {
-						r1 = f.getResourceQuantity();
-						break;
-					}
-				}
-			} else if (a1.getName().toString().equals("GOLDMINE")) {
-				GoldMine goldmine = (GoldMine) a1;
-
-				for (GoldMine g : this.getGoldMines()) {
-					if (g.getPosition().x == goldmine.getPosition().x
-							&& g.getPosition().y == goldmine.getPosition().y) {
-						r1 = g.getResourceQuantity();
-						break;
-					}
-				}
-			}
-		} else if (action1Name.toString().equals("MOVE")) {
-			MoveAction move = (MoveAction) action1;
-			a1 = move.getMapObject();
-
-			if (a1.getName().toString().equals("FOREST")) {
-				Forest forest = (Forest) a1;
-
-				for (Forest f : this.getForests()) {
-					if (f.getPosition().x == forest.getPosition().x && f.getPosition().y == forest.getPosition().y) {
-						r1 = f.getResourceQuantity();
-						break;
-					}
-				}
-			} else if (a1.getName().toString().equals("GOLDMINE")) {
-				GoldMine goldmine = (GoldMine) a1;
-
-				for (GoldMine g : this.getGoldMines()) {
-					if (g.getPosition().x == goldmine.getPosition().x
-							&& g.getPosition().y == goldmine.getPosition().y) {
-						r1 = g.getResourceQuantity();
-						break;
-					}
-				}
-			}
-		} else if (action1Name.toString().equals("DEPOSIT")) {
-			a1 = this.townHall;
-		}
-
-		if (action2Name.toString().equals("HARVEST")) {
-			HarvestAction harvest = (HarvestAction) action2;
-			a2 = harvest.getResource();
-
-			if (a2.getName().toString().equals("FOREST")) {
-				Forest forest = (Forest) a2;
-
-				for (Forest f : this.getForests()) {
-					if (f.getPosition().x == forest.getPosition().x && f.getPosition().y == forest.getPosition().y) {
-						r2 = f.getResourceQuantity();
-						break;
-					}
-				}
-			} else if (a2.getName().toString().equals("GOLDMINE")) {
-				GoldMine goldmine = (GoldMine) a2;
-
-				for (GoldMine g : this.getGoldMines()) {
-					if (g.getPosition().x == goldmine.getPosition().x
-							&& g.getPosition().y == goldmine.getPosition().y) {
-						r2 = g.getResourceQuantity();
-						break;
-					}
-				}
-			}
-		} else if (action2Name.toString().equals("MOVE")) {
-			MoveAction move = (MoveAction) action2;
-			a2 = move.getMapObject();
-
-			if (a2.getName().toString().equals("FOREST")) {
-				Forest forest = (Forest) a2;
+	public Iterator<GameState> successors(int maxChildren) {
+		List<ArrayList<GameState>> peasantChildren = new ArrayList<ArrayList<GameState>>();
 
-				for (Forest f : this.getForests()) {
-					if (f.getPosition().x == forest.getPosition().x && f.getPosition().y == forest.getPosition().y) {
-						r2 = f.getResourceQuantity();
-						break;
-					}
-				}
-			} else if (a2.getName().toString().equals("GOLDMINE")) {
-				GoldMine goldmine = (GoldMine) a2;
-
-				for (GoldMine g : this.getGoldMines()) {
-					if (g.getPosition().x == goldmine.getPosition().x
-							&& g.getPosition().y == goldmine.getPosition().y) {
-						r2 = g.getResourceQuantity();
-						break;
-					}
-				}
-			}
-		} else if (action2Name.toString().equals("DEPOSIT")) {
-			a2 = this.townHall;
-		}
-
-		if (action3Name.toString().equals("HARVEST")) {
-			HarvestAction harvest = (HarvestAction) action3;
-			a3 = harvest.getResource();
-
-			if (a3.getName().toString().equals("FOREST")) {
-				Forest forest = (Forest) a3;
-
-				for (Forest f : this.getForests()) {
-					if (f.getPosition().x == forest.getPosition().x && f.getPosition().y == forest.getPosition().y) {
-						r3 = f.getResourceQuantity();
-						break;
-					}
-				}
-			} else if (a3.getName().toString().equals("GOLDMINE")) {
-				GoldMine goldmine = (GoldMine) a3;
-
-				for (GoldMine g : this.getGoldMines()) {
-					if (g.getPosition().x == goldmine.getPosition().x
-							&& g.getPosition().y == goldmine.getPosition().y) {
-						r3 = g.getResourceQuantity();
-						break;
-					}
-				}
-			}
-		} else if (action3Name.toString().equals("MOVE")) {
-			MoveAction move = (MoveAction) action3;
-			a3 = move.getMapObject();
-
-			if (a3.getName().toString().equals("FOREST")) {
-				Forest forest = (Forest) a3;
-
-				for (Forest f : this.getForests()) {
-					if (f.getPosition().x == forest.getPosition().x && f.getPosition().y == forest.getPosition().y) {
-						r3 = f.getResourceQuantity();
-						break;
-					}
-				}
-			} else if (a3.getName().toString().equals("GOLDMINE")) {
-				GoldMine goldmine = (GoldMine) a3;
-
-				for (GoldMine g : this.getGoldMines()) {
-					if (g.getPosition().x == goldmine.getPosition().x
-							&& g.getPosition().y == goldmine.getPosition().y) {
-						r3 = g.getResourceQuantity();
-						break;
-					}
-				}
-			}
-		} else if (action3Name.toString().equals("DEPOSIT")) {
-			a3 = this.townHall;
+		for (int i = 0; i < getPeasantCount(); i++) {
+			peasantChildren.add(getChildren(i));
 		}
 
-		// if 1, 2, 3 are the same
-		// if 1, 2 are the same
-		// if 2, 3 are the same
-		// if 1, 3 are the same
-
-		Position p1 = a1.getPosition();
-		Position p2 = a2.getPosition();
-		Position p3 = a3.getPosition();
-
-		if (p1.x == p2.x && p1.y == p2.y && p2.x == p3.x && p2.y == p3.y) {
-			if (!a1.getName().toString().equals("TOWNHALL") && r1 < 300) {
-				return true;
-			}
-		} else if (p1.x == p2.x && p1.y == p2.y) {
-			if (!a1.getName().toString().equals("TOWNHALL") && r1 < 200) {
-				return true;
-			}
-		} else if (p2.x == p3.x && p2.y == p3.y) {
-			if (!a2.getName().toString().equals("TOWNHALL") && r2 < 200) {
-				return true;
-			}
-		} else if (p1.x == p3.x && p1.y == p3.y) {
-			if (!a3.getName().toString().equals("TOWNHALL") && r3 < 200) {
-				return true;
-			}
-		}
-
-		return false;
+		return new JointActionIterator(this, peasantChildren, maxChildren);
 	}
 
 	/**
-	 * Merging the state of 3 actions into one.
-	 * 
+	 * Starts a merged child of this state from state1, which already holds
+	 * the effects of the actions of the peasants merged so far.
+	 *
 	 * @param state1
-	 * @param state2
-	 * @param state3
+	 * @param newAction
+	 *            every peasant's action
 	 * @return
 	 */
-	private GameState mergeState(GameState state1, GameState state2, GameState state3) {
-		StripsAction action1 = state1.parentAction.get(0);
-		StripsAction action2 = state2.parentAction.get(0);
-		StripsAction action3 = state3.parentAction.get(0);
-		String action1Name = action1.getAction();
-		String action2Name = action2.getAction();
-		String action3Name = action3.getAction();
-		Peasant peasant1 = null;
-		Peasant peasant2 = null;
-		Peasant peasant3 = null;
-
-		if (collisionCheck(action1Name, action2Name, action3Name, action1, action2, action3)) {
-			return null;
-		}
-
-		ArrayList<StripsAction> newAction = new ArrayList<StripsAction>();
-		ArrayList<Peasant> newPeasants = new ArrayList<Peasant>();
-		ArrayList<Forest> newForests = new ArrayList<Forest>();
-		ArrayList<GoldMine> newGoldMines = new ArrayList<GoldMine>();
-		TownHall newTownHall = state1.getTownHall();
-
-		int newMyWood = state1.getMyWood();
-		int newMyGold = state1.getMyGold();
-
-		int newCost = state1.getMyCost();
-
-		for (Peasant peasant : state1.peasants) {
-			if (peasant.getUnitID() == action1.getPeasant().getUnitID()) {
-				peasant1 = peasant;
-			}
-		}
-
-		for (Peasant peasant : state2.peasants) {
-			if (peasant.getUnitID() == action2.getPeasant().getUnitID()) {
-				peasant2 = peasant;
-			}
-		}
-
-		for (Peasant peasant : state3.peasants) {
-			if (peasant.getUnitID() == action3.getPeasant().getUnitID()) {
-				peasant3 = peasant;
-			}
-		}
-
-		for (Forest forest : state1.getForests()) {
-			newForests.add(forest);
-		}
-
-		for (GoldMine goldmine : state1.getGoldMines()) {
-			newGoldMines.add(goldmine);
-		}
-
-		newAction.add(action1);
-		newAction.add(action2);
-		newAction.add(action3);
-		newPeasants.add(peasant1);
-		newPeasants.add(peasant2);
-		newPeasants.add(peasant3);
-
-		GameState newState = new GameState(newAction, this, newPeasants, newForests, newGoldMines, newTownHall,
-				state1.getGoalWood(), state1.getGoalGold(), newMyWood, newMyGold, state1.getPlayerNum(),
-				state1.getState(), newCost, state1.getTotalWoodOnMap(), state1.getTotalGoldOnMap(),
-				state1.isBuildPeasants(), state1.getTotalFoodOnMap());
-
-		switch (action2Name) {
-		case ("MOVE"):
-			newState.setMyCost(newState.getMyCost() + state2.getMyCost());
-			break;
-		case ("HARVEST"):
-			newState.setMyCost(newState.getMyCost() + 1);
-
-			HarvestAction harvest = (HarvestAction) action2;
-			MapObject resource = harvest.getResource();
-
-			if (resource.getName().equals("FOREST")) {
-				for (int i = 0; i < newState.getForests().size(); i++) {
-					Forest forest = newState.getForests().get(i);
-
-					if (forest.getPosition().x == resource.getPosition().x
-							&& forest.getPosition().y == resource.getPosition().y) {
-						if (forest.getResourceQuantity() == 0) {
-							return null;
-						}
-
-						forest.setResourceQuantity(forest.getResourceQuantity() - 100);
-
-						// If the amount of wood at that forest is less than 0,
-						// then
-						// we don't consider it anymore
-						if (forest.getResourceQuantity() <= 0) {
-							ArrayList<Forest> newForest = newState.getForests();
-
-							ArrayList<Forest> updateForest = new ArrayList<Forest>();
-							for (Forest forests : newForest) {
-								if (forests.getResourceQuantity() != 0) {
-									updateForest.add(forests);
-								}
-							}
-							newState.setForests(updateForest);
-						}
-
-						break;
-					}
-				}
-			}
+	GameState mergeBase(GameState state1, ArrayList<StripsAction> newAction) {
+		GameState newState = new GameState(this, newAction, 0);
 
-			else if (resource.getName().equals("GOLDMINE")) {
-				for (int i = 0; i < newState.getGoldMines().size(); i++) {
-					GoldMine goldmine = newState.getGoldMines().get(i);
-
-					if (goldmine.getPosition().x == resource.getPosition().x
-							&& goldmine.getPosition().y == resource.getPosition().y) {
-
-						if (goldmine.getResourceQuantity() == 0) {
-							return null;
-						}
-
-						goldmine.setResourceQuantity(goldmine.getResourceQuantity() - 100);
-
-						// If the amount of wood at that forest is less than 0,
-						// then
-						// we don't consider it anymore
-						if (goldmine.getResourceQuantity() <= 0) {
-							ArrayList<GoldMine> newGoldMine = newState.getGoldMines();
-
-							ArrayList<GoldMine> updateGoldMine = new ArrayList<GoldMine>();
-							for (GoldMine goldmines : newGoldMine) {
-								if (goldmines.getResourceQuantity() != 0) {
-									updateGoldMine.add(goldmines);
-								}
-							}
-							newState.setGoldMines(updateGoldMine);
-						}
-
-						break;
-					}
-				}
-			}
-			break;
-		case ("DEPOSIT"):
-			newState.setMyCost(newState.getMyCost() + 1);
-
-			DepositAction deposit = (DepositAction) action2;
-
-			if (deposit.getPeasant().getHoldingObject().toString().equals("WOOD")) {
-				newState.setMyWood(newState.getMyWood() + deposit.getPeasant().getResourceQuantity());
-			} else if (deposit.getPeasant().getHoldingObject().toString().equals("GOLD")) {
-				newState.setMyGold(newState.getMyGold() + deposit.getPeasant().getResourceQuantity());
-			}
-			break;
-		}
-
-		switch (action3Name) {
-		case ("MOVE"):
-			newState.setMyCost(newState.getMyCost() + state3.getMyCost());
-			break;
-		case ("HARVEST"):
-			newState.setMyCost(newState.getMyCost() + 1);
-
-			HarvestAction harvest = (HarvestAction) action3;
-			MapObject resource = harvest.getResource();
-
-			if (resource.getName().equals("FOREST")) {
-				for (int i = 0; i < newState.getForests().size(); i++) {
-					Forest forest = newState.getForests().get(i);
-
-					if (forest.getPosition().x == resource.getPosition().x
-							&& forest.getPosition().y == resource.getPosition().y) {
-						if (forest.getResourceQuantity() == 0) {
-							return null;
-						}
-
-						forest.setResourceQuantity(forest.getResourceQuantity() - 100);
-
-						// If the amount of wood at that forest is less than 0,
-						// then
-						// we don't consider it anymore
-						if (forest.getResourceQuantity() <= 0) {
-							ArrayList<Forest> newForest = newState.getForests();
-
-							ArrayList<Forest> updateForest = new ArrayList<Forest>();
-							for (Forest forests : newForest) {
-								if (forests.getResourceQuantity() != 0) {
-									updateForest.add(forests);
-								}
-							}
-							newState.setForests(updateForest);
-						}
-
-						break;
-					}
-				}
-			}
-
-			else if (resource.getName().equals("GOLDMINE")) {
-				for (int i = 0; i < newState.getGoldMines().size(); i++) {
-					GoldMine goldmine = newState.getGoldMines().get(i);
-
-					if (goldmine.getPosition().x == resource.getPosition().x
-							&& goldmine.getPosition().y == resource.getPosition().y) {
-
-						if (goldmine.getResourceQuantity() == 0) {
-							return null;
-						}
-
-						goldmine.setResourceQuantity(goldmine.getResourceQuantity() - 100);
-
-						// If the amount of wood at that forest is less than 0,
-						// then
-						// we don't consider it anymore
-						if (goldmine.getResourceQuantity() <= 0) {
-							ArrayList<GoldMine> newGoldMine = newState.getGoldMines();
-
-							ArrayList<GoldMine> updateGoldMine = new ArrayList<GoldMine>();
-							for (GoldMine goldmines : newGoldMine) {
-								if (goldmines.getResourceQuantity() != 0) {
-									updateGoldMine.add(goldmines);
-								}
-							}
-							newState.setGoldMines(updateGoldMine);
-						}
-						break;
-					}
-				}
-			}
-
-			break;
-		case ("DEPOSIT"):
-			newState.setMyCost(newState.getMyCost() + 1);
-
-			DepositAction deposit = (DepositAction) action3;
-
-			if (deposit.getPeasant().getHoldingObject().toString().equals("WOOD")) {
-				newState.setMyWood(newState.getMyWood() + deposit.getPeasant().getResourceQuantity());
-			} else if (deposit.getPeasant().getHoldingObject().toString().equals("GOLD")) {
-				newState.setMyGold(newState.getMyGold() + deposit.getPeasant().getResourceQuantity());
-			}
-			break;
-		}
+		newState.peasants = state1.peasants;
+		newState.resourceAmounts = state1.resourceAmounts;
+		newState.myWood = state1.myWood;
+		newState.myGold = state1.myGold;
+		newState.zobrist = state1.zobrist;
+		newState.myCost = state1.myCost;
 
 		return newState;
 	}
 
 	/**
-	 * Merging the state of 2 actions into 1
-	 * 
-	 * @param state1
-	 * @param state2
-	 * @return
+	 * Adds the effects of the action that produced child to a merged state.
+	 * The acting peasant is copied over from child and the action's effects on
+	 * the resources, wood and gold are applied again on top of what the
+	 * merged state already holds.
+	 *
+	 * @param newState
+	 *            merged state being built
+	 * @param child
+	 *            child of this state produced by one peasant's action
+	 * @return false if the action can't be done together with the others
 	 */
-	private GameState mergeState(GameState state1, GameState state2) {
-
-		StripsAction action1 = state1.parentAction.get(0);
-		StripsAction action2 = state2.parentAction.get(0);
-		String action1Name = action1.getAction();
-		String action2Name = action2.getAction();
+	boolean mergeAction(GameState newState, GameState child) {
 
-		if (action1Name.equals(action2Name) && action1Name.equals("CREATE")) {
-			return null;
-		}
-
-		Peasant peasant1 = null;
-		Peasant peasant2 = null;
-
-		ArrayList<StripsAction> newAction = new ArrayList<StripsAction>();
-		ArrayList<Peasant> newPeasants = new ArrayList<Peasant>();
-		ArrayList<Forest> newForests = new ArrayList<Forest>();
-		ArrayList<GoldMine> newGoldMines = new ArrayList<GoldMine>();
-		TownHall newTownHall = state1.getTownHall();
-
-		int newMyWood = state1.getMyWood();
-		int newMyGold = state1.getMyGold();
-
-		int newCost = state1.getMyCost();
-
-		for (Peasant peasant : state1.peasants) {
-			if (peasant.getUnitID() == action1.getPeasant().getUnitID()) {
-				peasant1 = peasant;
-			}
-		}
+		StripsAction action = child.parentAction.get(0);
+		int unitID = action.getPeasant().getUnitID();
 
-		for (Peasant peasant : state2.peasants) {
-			if (peasant.getUnitID() == action2.getPeasant().getUnitID()) {
-				peasant2 = peasant;
-			}
-		}
-
-		for (Forest forest : state1.getForests()) {
-			newForests.add(forest);
-		}
-
-		for (GoldMine goldmine : state1.getGoldMines()) {
-			newGoldMines.add(goldmine);
-		}
-
-		newAction.add(action1);
-		newAction.add(action2);
-		newPeasants.add(peasant1);
-		newPeasants.add(peasant2);
-
-		GameState newState = new GameState(newAction, this, newPeasants, newForests, newGoldMines, newTownHall,
-				state1.getGoalWood(), state1.getGoalGold(), newMyWood, newMyGold, state1.getPlayerNum(),
-				state1.getState(), newCost, state1.getTotalWoodOnMap(), state1.getTotalGoldOnMap(),
-				state1.isBuildPeasants(), state1.getTotalFoodOnMap());
-
-		switch (action2Name) {
-		case ("MOVE"):
-			newState.setMyCost(newState.getMyCost() + state2.getMyCost());
+		switch (action.getAction()) {
+		case MOVE:
+			newState.copyPeasant(child, unitID);
 			break;
-		case ("HARVEST"):
-			newState.setMyCost(newState.getMyCost() + 1);
-
-			HarvestAction harvest = (HarvestAction) action2;
-			MapObject resource = harvest.getResource();
-
-			if (resource.getName().equals("FOREST")) {
-				for (int i = 0; i < newState.getForests().size(); i++) {
-					Forest forest = newState.getForests().get(i);
-
-					if (forest.getPosition().x == resource.getPosition().x
-							&& forest.getPosition().y == resource.getPosition().y) {
-						if (forest.getResourceQuantity() == 0) {
-							return null;
-						}
-
-						forest.setResourceQuantity(forest.getResourceQuantity() - 100);
-
-						// If the amount of wood at that forest is less than 0,
-						// then
-						// we don't consider it anymore
-						if (forest.getResourceQuantity() <= 0) {
-							ArrayList<Forest> newForest = newState.getForests();
-
-							ArrayList<Forest> updateForest = new ArrayList<Forest>();
-							for (Forest forests : newForest) {
-								if (forests.getResourceQuantity() != 0) {
-									updateForest.add(forests);
-								}
-							}
-							newState.setForests(updateForest);
-						}
-
-						break;
-					}
-				}
-			}
-
-			else if (resource.getName().equals("GOLDMINE")) {
-				for (int i = 0; i < newState.getGoldMines().size(); i++) {
-					GoldMine goldmine = newState.getGoldMines().get(i);
-
-					if (goldmine.getPosition().x == resource.getPosition().x
-							&& goldmine.getPosition().y == resource.getPosition().y) {
-
-						if (goldmine.getResourceQuantity() == 0) {
-							return null;
-						}
-
-						goldmine.setResourceQuantity(goldmine.getResourceQuantity() - 100);
-
-						// If the amount of wood at that forest is less than 0,
-						// then
-						// we don't consider it anymore
-						if (goldmine.getResourceQuantity() <= 0) {
-							ArrayList<GoldMine> newGoldMine = newState.getGoldMines();
-
-							ArrayList<GoldMine> updateGoldMine = new ArrayList<GoldMine>();
-							for (GoldMine goldmines : newGoldMine) {
-								if (goldmines.getResourceQuantity() != 0) {
-									updateGoldMine.add(goldmines);
-								}
-							}
-							newState.setGoldMines(updateGoldMine);
-						}
-
-						break;
-					}
-				}
+		case HARVEST:
+			HarvestAction harvest = (HarvestAction) action;
+			int resourceID = PlanningMap.getResourceID(harvest.getResource());
+			int amount = newState.getResourceAmount(resourceID);
+
+			// another peasant already took the last of it
+			if (amount <= 0) {
+				return false;
 			}
 
+			newState.copyPeasant(child, unitID);
+			newState.setResourceAmount(resourceID, amount - 100);
 			break;
-		case ("DEPOSIT"):
-			newState.setMyCost(newState.getMyCost() + 1);
+		case DEPOSIT:
+			DepositAction deposit = (DepositAction) action;
 
-			DepositAction deposit = (DepositAction) action2;
+			newState.copyPeasant(child, unitID);
 
-			if (deposit.getPeasant().getHoldingObject().toString().equals("WOOD")) {
+			if (deposit.getPeasant().getHoldingObject() == ResourceType.WOOD) {
 				newState.setMyWood(newState.getMyWood() + deposit.getPeasant().getResourceQuantity());
-			} else if (deposit.getPeasant().getHoldingObject().toString().equals("GOLD")) {
+			} else if (deposit.getPeasant().getHoldingObject() == ResourceType.GOLD) {
 				newState.setMyGold(newState.getMyGold() + deposit.getPeasant().getResourceQuantity());
 			}
 			break;
+		case CREATE:
 
-		case ("CREATE"):
-
-			if (newState.getPeasants().size() == newState.getTotalFoodOnMap()) {
-				return null;
+			// only one peasant can be built at a time
+			if (newState.getPeasantCount() != this.getPeasantCount()
+					|| newState.getPeasantCount() >= newState.getTotalFoodOnMap()) {
+				return false;
 			}
 
-			newState.setMyCost(newState.getMyCost() + 1);
-
-			for (Peasant peasant : state2.getPeasants()) {
-				if (peasant.getUnitID() != newState.getPeasants().get(0).getUnitID()
-						&& peasant.getUnitID() != newState.getPeasants().get(1).getUnitID()) {
-					newState.getPeasants().add(peasant);
-				}
+			CreateAction create = (CreateAction) action;
+			if (create.getCreatedPeasant() == null) {
+				return false;
 			}
 
+			Position created = create.getCreatedPeasant().getPosition();
+			newState.addPeasant(created.x, created.y);
 			newState.setMyGold(newState.getMyGold() - 400);
 			break;
+		case TRIP:
+			TripAction trip = (TripAction) action;
+			int tripResourceID = PlanningMap.getResourceID(trip.getResource());
+			int left = newState.getResourceAmount(tripResourceID);
+
+			// the peasants before it leave too little for every trip
+			if (left <= 100 * (trip.getTrips() - 1)) {
+				return false;
+			}
+
+			newState.copyPeasant(child, unitID);
+			newState.setResourceAmount(tripResourceID, left - 100 * trip.getTrips());
+
+			if (trip.getResource().getType() == MapObjectType.FOREST) {
+				newState.setMyWood(newState.getMyWood() + 100 * trip.getTrips());
+			} else {
+				newState.setMyGold(newState.getMyGold() + 100 * trip.getTrips());
+			}
+			break;
 		}
 
-		return newState;
+		// the peasants act at the same time, so the joint action takes as
+		// long as the slowest of them
+		newState.setMyCost(Math.max(newState.getMyCost(), child.getMyCost()));
+
+		return true;
 	}
 
 	/**
 	 * Gets all possible children of a peasant
-	 * 
-	 * @param peasant
+	 *
+	 * @param unitID
 	 * @return
 	 */
-	private ArrayList<GameState> getChildren(Peasant peasant) {
+	ArrayList<GameState> getChildren(int unitID) {
 
 		ArrayList<GameState> children = new ArrayList<GameState>();
 
+		Peasant peasant = getPeasant(unitID);
 		StripsAction actionOfInterest = null;
 
 		if (parentAction == null || parentAction.isEmpty() || parentAction.size() == 0) {
@@ -906,38 +401,62 @@ public class GameState implements Comparable<GameState> {
 				}
 
 				else {
-					if (action.getAction().equals("CREATE")) {
+					if (action.getAction() == StripsActionType.CREATE) {
 						actionOfInterest = action;
 					}
 				}
 			}
 		}
+		// With macro actions an empty peasant only makes whole trips
+		if (peasant.getIsEmpty() && macroTrips > 0) {
+			addTrips(peasant, children);
+		}
+
 		// If peasant isn't holding anything, it should move to a resource, or
 		// harvest at a resource
-		if (peasant.getIsEmpty()) {
-			for (GoldMine goldmine : goldMines) {
-				HarvestAction harvest = new HarvestAction(peasant, goldmine);
+		if (peasant.getIsEmpty() && macroTrips == 0) {
+			boolean canMove = parentAction == null || actionOfInterest == null
+					|| actionOfInterest.getAction() != StripsActionType.MOVE;
+
+			// only the resources on the tiles around the peasant can be
+			// harvested, so look those up instead of checking every resource
+			Position at = peasant.getPosition();
+			for (Direction direction : Direction.values()) {
+				int resourceID = map.getResourceIDAt(at.x + direction.xComponent(), at.y + direction.yComponent());
+				if (resourceID < 0) {
+					continue;
+				}
+
+				HarvestAction harvest = new HarvestAction(peasant, map.getResource(resourceID));
 
 				if (harvest.preconditionsMet(this)) {
 					children.add(harvest.apply(this));
 				}
-
-				if (parentAction == null || actionOfInterest.getAction() != "MOVE") {
-					MoveAction move = new MoveAction(peasant, goldmine, goldmine.getPosition());
-					children.add(move.apply(this));
-				}
 			}
 
-			for (Forest forest : forests) {
-				HarvestAction harvest = new HarvestAction(peasant, forest);
+			if (canMove) {
+				for (GoldMine goldmine : map.getGoldMines()) {
+					if (resourceAmounts.get(goldmine.getResourceID()) <= 0) {
+						continue;
+					}
 
-				if (harvest.preconditionsMet(this)) {
-					children.add(harvest.apply(this));
+					MoveAction move = new MoveAction(peasant, goldmine, goldmine.getPosition());
+
+					if (move.preconditionsMet(this)) {
+						children.add(move.apply(this));
+					}
 				}
 
-				if (parentAction == null || actionOfInterest.getAction() != "MOVE") {
+				for (Forest forest : map.getForests()) {
+					if (resourceAmounts.get(forest.getResourceID()) <= 0) {
+						continue;
+					}
+
 					MoveAction move = new MoveAction(peasant, forest, forest.getPosition());
-					children.add(move.apply(this));
+
+					if (move.preconditionsMet(this)) {
+						children.add(move.apply(this));
+					}
 				}
 			}
 		}
@@ -952,9 +471,13 @@ public class GameState implements Comparable<GameState> {
 				children.add(deposit.apply(this));
 			}
 
-			if (parentAction == null || actionOfInterest == null || actionOfInterest.getAction() != "MOVE") {
-				MoveAction move = new MoveAction(peasant, this.townHall, townHall.getPosition());
-				children.add(move.apply(this));
+			if (parentAction == null || actionOfInterest == null
+					|| actionOfInterest.getAction() != StripsActionType.MOVE) {
+				MoveAction move = new MoveAction(peasant, this.getTownHall(), getTownHall().getPosition());
+
+				if (move.preconditionsMet(this)) {
+					children.add(move.apply(this));
+				}
 			}
 		}
 
@@ -971,242 +494,223 @@ public class GameState implements Comparable<GameState> {
 	}
 
 	/**
-	 * Write your heuristic function here. Remember this must be admissible for
-	 * the properties of A* to hold. If you can come up with an easy way of
-	 * computing a consistent heuristic that is even better, but not strictly
-	 * necessary.
+	 * Adds the trips an empty peasant can make to each resource, from 1 up to
+	 * macroTrips of them. More trips than it takes to reach the goal are left
+	 * out, except for gold when peasants can be built, but 1 trip to any
+	 * resource is always there so the peasant has something to do while the
+	 * others finish.
 	 *
-	 * Add a description here in your submission explaining your heuristic.
+	 * @param peasant
+	 * @param children
+	 */
+	private void addTrips(Peasant peasant, ArrayList<GameState> children) {
+		for (int resourceID = 0; resourceID < resourceAmounts.size(); resourceID++) {
+			MapObject resource = map.getResource(resourceID);
+			int tripsThere = (Math.max(0, resourceAmounts.get(resourceID)) + 99) / 100;
+			int tripsWanted = macroTrips;
+
+			if (resource.getType() == MapObjectType.FOREST) {
+				tripsWanted = (Math.max(0, goalWood - myWood) + 99) / 100;
+			} else if (!buildPeasants) {
+				tripsWanted = (Math.max(0, goalGold - myGold) + 99) / 100;
+			}
+
+			int mostTrips = Math.min(tripsThere, Math.min(macroTrips, Math.max(1, tripsWanted)));
+
+			for (int trips = 1; trips <= mostTrips; trips++) {
+				TripAction trip = new TripAction(peasant, resource, getTownHall(), trips);
+
+				if (trip.preconditionsMet(this)) {
+					children.add(trip.apply(this));
+				}
+			}
+		}
+	}
+
+	/**
+	 * A lower bound on the time left until the goal, counted in the same units
+	 * as myCost.
+	 *
+	 * Every 100 wood or gold still missing is one trip: walk to a resource,
+	 * harvest, walk back to the townhall, deposit. The trips are handed out to
+	 * the resources nearest the townhall first, never more than a resource
+	 * still holds, and each costs 2 plus both legs of the walk. A load already
+	 * being carried only needs to be walked home and deposited, and only as
+	 * many loads as are still missing of its kind count, the nearest to the
+	 * townhall first. A peasant that is empty may be closer to a resource than the townhall is, so one
+	 * outbound walk per empty peasant is counted shorter by as much as that,
+	 * but never by more than the longest leg. Peasants work in parallel, so
+	 * the total work is split evenly across them. When peasants can be built,
+	 * every number of extra peasants up to the supply cap is tried, each
+	 * costing one create and 400 more gold, and the smallest estimate is used.
+	 *
+	 * The trip distances are exact grid distances and every real plan has to
+	 * do at least this much work, so the estimate never overshoots. At a goal
+	 * it is 0.
+	 *
+	 * It is computed the first time it is asked for and cached, see
+	 * clearCachedCost.
 	 *
 	 * @return The value estimated remaining cost to reach a goal state from
 	 *         this state.
 	 */
 	public double heuristic() {
-		double heuristic = 0;
-
-		ArrayList<StripsAction> lastAction = parentAction;
-		ArrayList<StripsAction> ancestorAction = this.getParentState().getParentAction();
-
-		if (ancestorAction == null) {
-			return heuristic;
+		if (Double.isNaN(heuristic)) {
+			heuristic = computeHeuristic();
 		}
+		return heuristic;
+	}
 
-		if (lastAction.size() == 1) {
-			heuristic += heuristicPerPeasant(lastAction.get(0), ancestorAction.get(0));
+	/**
+	 * The heuristic without the cache, package-private so the benchmark can
+	 * time it
+	 */
+	double computeHeuristic() {
+		if (isGoal()) {
+			return 0;
 		}
 
-		if (lastAction.size() == 2) {
-			heuristic += 1000;
-			StripsAction lAct1 = lastAction.get(0);
-			StripsAction lAct2 = null;
-
-			StripsAction aAct1 = ancestorAction.get(0);
-			StripsAction aAct2 = null;
-
-			if (lastAction.size() > 1) {
-				lAct2 = lastAction.get(1);
-			}
-			if (ancestorAction.size() > 1) {
-				aAct2 = ancestorAction.get(1);
+		int woodNeeded = goalWood - myWood;
+		int goldNeeded = goalGold - myGold;
+		int emptyPeasants = 0;
+		int[] headStarts = new int[getPeasantCount()];
+		// time to deposit each load being carried, per kind
+		int woodLoads = 0;
+		int goldLoads = 0;
+		int[] woodDeposits = new int[getPeasantCount()];
+		int[] goldDeposits = new int[getPeasantCount()];
+		ApproachTable table = map.getApproachTable();
+
+		for (int i = 0; i < getPeasantCount(); i++) {
+			ResourceType holding = getPeasantHolding(i);
+
+			if (holding == null) {
+				headStarts[emptyPeasants++] = headStart(i);
+				continue;
 			}
 
-			if (lAct2 == null) {
-				heuristic += 1000;
-				return heuristic;
-			}
+			int base = i * PEASANT_SIZE;
+			int deposit = 1 + table.getTravelCost(peasants[base + PEASANT_X], peasants[base + PEASANT_Y],
+					table.getTownHallTarget());
 
-			// This means that the ancestor just did a create action
-			if (aAct2 == null) {
-				heuristic += 1000;
-				heuristic += heuristicPerPeasant(lAct1, aAct1);
-				heuristic += heuristicPerPeasant(lAct2, aAct1);
+			if (holding == ResourceType.WOOD) {
+				woodDeposits[woodLoads++] = deposit;
+				woodNeeded -= peasants[base + PEASANT_AMOUNT];
 			} else {
-				heuristic += heuristicPerPeasant(lAct1, aAct1);
-				heuristic += heuristicPerPeasant(lAct2, aAct2);
+				goldDeposits[goldLoads++] = deposit;
+				goldNeeded -= peasants[base + PEASANT_AMOUNT];
 			}
 		}
 
-		if (lastAction.size() == 3) {
-			heuristic += 2000;
+		int carryingWork = depositWork(woodDeposits, woodLoads, goalWood - myWood)
+				+ depositWork(goldDeposits, goldLoads, goalGold - myGold);
 
-			StripsAction lAct1 = lastAction.get(0);
-			StripsAction lAct2 = lastAction.get(1);
-			StripsAction lAct3 = lastAction.get(2);
+		Arrays.sort(headStarts, 0, emptyPeasants);
 
-			StripsAction aAct1 = ancestorAction.get(0);
-			StripsAction aAct2 = null;
-			StripsAction aAct3 = null;
-
-			if (ancestorAction.size() > 1) {
-				aAct2 = ancestorAction.get(1);
-			}
-			if (ancestorAction.size() > 2) {
-				aAct3 = ancestorAction.get(2);
-			}
+		int mostPeasants = buildPeasants ? Math.max(map.getSupplyCap(), getPeasantCount()) : getPeasantCount();
+		double best = Double.POSITIVE_INFINITY;
 
-			if (aAct2 == null) {
-				heuristic += 2000;
-				return heuristic;
+		for (int built = 0; getPeasantCount() + built <= mostPeasants; built++) {
+			double work = tripWork(woodNeeded, goldNeeded + 400 * built, headStarts, emptyPeasants);
+			if (work == Double.POSITIVE_INFINITY) {
+				break;
 			}
 
-			// This means that the ancestor just did a create action
-			if (aAct3 == null) {
-				heuristic += 1000;
-				if (lAct1.getAction().toString().equals("CREATE")) {
-					heuristic += heuristicPerPeasant(lAct1, aAct1);
-					heuristic += heuristicPerPeasant(lAct2, aAct2);
-					heuristic += heuristicPerPeasant(lAct3, aAct1);
-				} else {
-					heuristic += heuristicPerPeasant(lAct1, aAct1);
-					heuristic += heuristicPerPeasant(lAct2, aAct2);
-					heuristic += heuristicPerPeasant(lAct3, aAct2);
-				}
-			} else {
-				heuristic += heuristicPerPeasant(lAct1, aAct1);
-				heuristic += heuristicPerPeasant(lAct2, aAct2);
-				heuristic += heuristicPerPeasant(lAct3, aAct3);
-			}
+			best = Math.min(best, (carryingWork + built + work) / (getPeasantCount() + built));
 		}
 
-		return heuristic;
-
+		return best;
 	}
 
 	/**
-	 * The heuristic such that it prioritizes getting gold first since we need
-	 * gold to build peasants and it is more advantageous to build peasants
-	 * early on than later.
-	 * 
-	 * Also punishes the peasant if it tries to get more gold if we have already
-	 * reached gold's goal. Likewise for wood.
-	 * 
-	 * @param parentAction
-	 * @param ancestorsAction
-	 * @return
+	 * @param deposits
+	 *            time to deposit each load of one kind being carried, sorted
+	 *            here
+	 * @param loads
+	 *            how many of deposits are used
+	 * @param needed
+	 *            how much of that kind is still missing
+	 * @return the time to deposit the loads that are still needed, the
+	 *         quickest first. Every load is 100.
 	 */
-	private double heuristicPerPeasant(StripsAction parentAction, StripsAction ancestorsAction) {
-
-		double heuristic = 0;
-
-		String lastAction = parentAction.getAction();
-		String ancestorAction = ancestorsAction.getAction();
-
-		switch (ancestorAction) {
-		case "MOVE":
-			switch (lastAction) {
-			case "HARVEST":
+	private static int depositWork(int[] deposits, int loads, int needed) {
+		Arrays.sort(deposits, 0, loads);
 
-				HarvestAction harvest = (HarvestAction) parentAction;
-
-				if (harvest.getResource().getName().equals("FOREST")) {
-					if (myWood < goalWood) {
-						heuristic += 200;
-					}
-					if (myWood > goalWood) {
-						heuristic -= 1000;
-					}
-				}
-
-				else if (harvest.getResource().getName().equals("GOLDMINE")) {
-					if (myGold < goalGold) {
-						heuristic += 400;
-					}
-
-					if (myGold > goalGold) {
-						heuristic -= 1000;
-					}
-				}
-
-				break;
-
-			case "DEPOSIT":
-				heuristic += 100;
-				break;
-			}
-			break;
+		int work = 0;
+		for (int i = 0; i < loads && 100 * i < needed; i++) {
+			work += deposits[i];
+		}
+		return work;
+	}
 
-		case "HARVEST":
-			switch (lastAction) {
-			case "MOVE":
-				heuristic += 500;
-				break;
+	/**
+	 * @param unitID
+	 *            an empty peasant
+	 * @return how many steps shorter the peasant's first walk out can be than
+	 *         a walk out from the townhall, the most by which any resource's
+	 *         trip distance exceeds the peasant's own way there
+	 */
+	private int headStart(int unitID) {
+		ApproachTable table = map.getApproachTable();
+		int x = getPeasantX(unitID);
+		int y = getPeasantY(unitID);
+		int most = 0;
+
+		for (int resourceID = 0; resourceID < resourceAmounts.size(); resourceID++) {
+			if (resourceAmounts.get(resourceID) <= 0 || map.getTripDistance(resourceID) == Integer.MAX_VALUE
+					|| table.getApproachTile(x, y, resourceID) == null) {
+				continue;
 			}
-			break;
-
-		case "DEPOSIT":
-			switch (lastAction) {
-			case "MOVE":
-
-				MoveAction moveAction = (MoveAction) parentAction;
-				String moveToResourceType = moveAction.getMapObject().getName();
-
-				switch (moveToResourceType) {
-				case "FOREST":
-
-					if (myWood < goalWood) {
-						heuristic += 200;
-					}
-					if (myWood > goalWood) {
-						heuristic -= 1000;
-					}
-					break;
-				case "GOLDMINE":
 
-					if (myGold < goalGold) {
-						heuristic += 400;
-					}
-
-					if (myGold > goalGold) {
-						heuristic -= 1000;
-					}
-					break;
+			most = Math.max(most, map.getTripDistance(resourceID) - table.getTravelCost(x, y, resourceID));
+		}
 
-				case "CREATE":
-					heuristic += (goalWood - myWood) * 10;
-					heuristic += (goalGold - myGold) * 10;
+		return most;
+	}
 
-					break;
+	/**
+	 * @param woodNeeded
+	 * @param goldNeeded
+	 * @param headStarts
+	 *            headStart of every empty peasant, smallest first
+	 * @param emptyPeasants
+	 *            how many of headStarts are used
+	 * @return the least time the trips for the given wood and gold can take
+	 *         all together, infinite if the map doesn't hold enough
+	 */
+	private double tripWork(int woodNeeded, int goldNeeded, int[] headStarts, int emptyPeasants) {
+		double work = 0;
+		int trips = 0;
+		int longestLeg = 0;
+
+		for (int i = 0; i < 2; i++) {
+			int tripsNeeded = (Math.max(0, i == 0 ? woodNeeded : goldNeeded) + 99) / 100;
+			int[] nearestFirst = i == 0 ? map.getForestsByDistance() : map.getGoldMinesByDistance();
+
+			for (int j = 0; j < nearestFirst.length && tripsNeeded > 0; j++) {
+				int resourceID = nearestFirst[j];
+				int tripsHere = Math.min(tripsNeeded, (Math.max(0, resourceAmounts.get(resourceID)) + 99) / 100);
+
+				if (tripsHere > 0) {
+					int leg = map.getTripDistance(resourceID);
+					work += tripsHere * (2 + 2 * leg);
+					trips += tripsHere;
+					tripsNeeded -= tripsHere;
+					longestLeg = Math.max(longestLeg, leg);
 				}
-				break;
-			case "CREATE":
-				heuristic += 500;
-				break;
 			}
-			break;
-		case "CREATE":
-			switch (lastAction) {
-			case "MOVE":
-
-				MoveAction moveAction = (MoveAction) parentAction;
-				String moveToResourceType = moveAction.getMapObject().getName();
-
-				switch (moveToResourceType) {
-				case "FOREST":
-
-					if (myWood < goalWood) {
-						heuristic += 200;
-					}
-					if (myWood > goalWood) {
-						heuristic -= 1000;
-					}
-					break;
-				case "GOLDMINE":
 
-					if (myGold < goalGold) {
-						heuristic += 400;
-					}
-
-					if (myGold > goalGold) {
-						heuristic -= 1000;
-					}
-					break;
-				}
-				break;
+			if (tripsNeeded > 0) {
+				return Double.POSITIVE_INFINITY;
 			}
-			break;
 		}
 
-		return heuristic;
+		// the biggest head starts, at most one per trip
+		for (int i = emptyPeasants - 1; i >= Math.max(0, emptyPeasants - trips); i--) {
+			work -= Math.min(headStarts[i], longestLeg);
+		}
+
+		return work;
 	}
 
 	/**
@@ -1218,7 +722,19 @@ public class GameState implements Comparable<GameState> {
 	 * @return The current cost to reach this goal
 	 */
 	public double getCost() {
-		return this.myCost + heuristic();
+		if (Double.isNaN(cost)) {
+			cost = myCost + heuristic();
+		}
+		return cost;
+	}
+
+	/**
+	 * Forgets the cached heuristic and cost. Called by everything that changes
+	 * what they depend on.
+	 */
+	private void clearCachedCost() {
+		heuristic = Double.NaN;
+		cost = Double.NaN;
 	}
 
 	/**
@@ -1233,12 +749,25 @@ public class GameState implements Comparable<GameState> {
 	 */
 	@Override
 	public int compareTo(GameState o) {
-		// TODO: Implement me!
-		return new Double(this.getCost()).compareTo(o.getCost());
+		int result = Double.compare(this.getCost(), o.getCost());
+
+		// on a tie prefer the state closer to the goal, so the search dives
+		// instead of widening a plateau of equally good states
+		if (result == 0) {
+			result = Double.compare(this.heuristic(), o.heuristic());
+		}
+
+		return result;
 	}
 
 	/**
 	 * This will be necessary to use the GameState as a key in a Set or Map.
+	 * Two states are equal when the world looks the same: the peasants (where
+	 * they are, what they carry and how much), how much is left at every
+	 * forest and goldmine, and how much wood and gold has been collected. How
+	 * we got to the state (parent and actions) is ignored so that the search
+	 * can detect transpositions. Which peasant is which is ignored too, two
+	 * peasants swapping places gives the same world.
 	 *
 	 * @param o
 	 *            The game state to compare
@@ -1247,98 +776,308 @@ public class GameState implements Comparable<GameState> {
 	@Override
 	public boolean equals(Object o) {
 
-		if (!o.getClass().equals(GameState.class)) {
+		if (this == o) {
+			return true;
+		}
+
+		if (o == null || !o.getClass().equals(GameState.class)) {
 			return false;
 		}
 
 		GameState otherState = (GameState) o;
 
-		if (goalWood != otherState.getGoalWood() || goalGold != otherState.getGoalGold()
-				|| myWood != otherState.getMyWood() || myGold != otherState.getMyGold()) {
+		if (zobrist != otherState.zobrist) {
 			return false;
 		}
 
-		if (!parentAction.equals(otherState.getParentAction())) {
+		if (goalWood != otherState.goalWood || goalGold != otherState.goalGold || myWood != otherState.myWood
+				|| myGold != otherState.myGold) {
 			return false;
 		}
+
+		return samePeasants(otherState) && resourceAmounts.equals(otherState.resourceAmounts);
+	}
+
+	/**
+	 * @param other
+	 * @return true if every peasant in this state has a peasant in the other
+	 *         state doing exactly the same, whatever their unit ids
+	 */
+	private boolean samePeasants(GameState other) {
+		if (Arrays.equals(peasants, other.peasants)) {
+			return true;
+		}
+
+		if (peasants.length != other.peasants.length) {
+			return false;
+		}
+
+		// there are only ever a handful of peasants, so pair them up one by
+		// one
+		boolean[] matched = new boolean[getPeasantCount()];
+
+		for (int i = 0; i < peasants.length; i += PEASANT_SIZE) {
+			boolean found = false;
+
+			for (int j = 0; j < other.peasants.length && !found; j += PEASANT_SIZE) {
+				if (!matched[j / PEASANT_SIZE] && samePeasant(peasants, i, other.peasants, j)) {
+					matched[j / PEASANT_SIZE] = true;
+					found = true;
+				}
+			}
+
+			if (!found) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean samePeasant(int[] a, int baseA, int[] b, int baseB) {
+		for (int k = 0; k < PEASANT_SIZE; k++) {
+			if (a[baseA + k] != b[baseB + k]) {
+				return false;
+			}
+		}
 		return true;
 	}
 
+	/**
+	 * @param unitID
+	 * @param otherID
+	 * @return true if the two peasants stand on the same tile carrying the
+	 *         same
+	 */
+	public boolean interchangeable(int unitID, int otherID) {
+		return samePeasant(peasants, unitID * PEASANT_SIZE, peasants, otherID * PEASANT_SIZE);
+	}
+
 	/**
 	 * This is necessary to use the GameState as a key in a HashSet or HashMap.
 	 * Remember that if two objects are equal they should hash to the same
-	 * value.
+	 * value. The Zobrist hash is kept up to date by the setters as each child
+	 * is built, so this is O(1).
 	 *
 	 * @return An integer hashcode that is equal for equal states.
 	 */
 	@Override
 	public int hashCode() {
-		// TODO: Implement me!
-		return 0;
+		return (int) (zobrist ^ (zobrist >>> 32));
 	}
 
-	public ArrayList<StripsAction> getParentAction() {
-		return parentAction;
+	/**
+	 * Hashes the whole world from scratch. Only needed for the initial state,
+	 * every other state gets its hash from its parent.
+	 *
+	 * @return
+	 */
+	private long computeZobrist() {
+		long result = ZobristHash.peasantCount(getPeasantCount()) + ZobristHash.wood(myWood)
+				+ ZobristHash.gold(myGold);
+
+		for (int i = 0; i < getPeasantCount(); i++) {
+			result += peasantKey(i);
+		}
+
+		for (int i = 0; i < resourceAmounts.size(); i++) {
+			result += ZobristHash.resource(i, resourceAmounts.get(i));
+		}
+
+		return result;
 	}
 
-	public void setParentAction(ArrayList<StripsAction> parentAction) {
-		this.parentAction = parentAction;
+	private long peasantKey(int unitID) {
+		int base = unitID * PEASANT_SIZE;
+		return ZobristHash.peasant(peasants[base + PEASANT_X], peasants[base + PEASANT_Y],
+				peasants[base + PEASANT_CARGO], peasants[base + PEASANT_AMOUNT]);
 	}
 
-	public GameState getParentState() {
-		return parentState;
+	/**
+	 * Overwrites one peasant, copying the peasants array first if it is still
+	 * shared with the parent
+	 */
+	private void writePeasant(int unitID, int x, int y, int cargo, int amount) {
+		if (!ownsPeasants) {
+			peasants = peasants.clone();
+			ownsPeasants = true;
+		}
+
+		int base = unitID * PEASANT_SIZE;
+
+		clearCachedCost();
+		zobrist -= peasantKey(unitID);
+		peasants[base + PEASANT_X] = x;
+		peasants[base + PEASANT_Y] = y;
+		peasants[base + PEASANT_CARGO] = cargo;
+		peasants[base + PEASANT_AMOUNT] = amount;
+		zobrist += peasantKey(unitID);
 	}
 
-	public void setParentState(GameState parentState) {
-		this.parentState = parentState;
+	/**
+	 * Makes a peasant in this state look like the same peasant in another
+	 * state
+	 *
+	 * @param other
+	 * @param unitID
+	 */
+	private void copyPeasant(GameState other, int unitID) {
+		int base = unitID * PEASANT_SIZE;
+		writePeasant(unitID, other.peasants[base + PEASANT_X], other.peasants[base + PEASANT_Y],
+				other.peasants[base + PEASANT_CARGO], other.peasants[base + PEASANT_AMOUNT]);
+	}
+
+	public void setPeasantPosition(int unitID, int x, int y) {
+		int base = unitID * PEASANT_SIZE;
+		writePeasant(unitID, x, y, peasants[base + PEASANT_CARGO], peasants[base + PEASANT_AMOUNT]);
+	}
+
+	/**
+	 * @param unitID
+	 * @param holding
+	 *            what the peasant carries, null for nothing
+	 * @param amount
+	 */
+	public void setPeasantCargo(int unitID, ResourceType holding, int amount) {
+		int base = unitID * PEASANT_SIZE;
+		writePeasant(unitID, peasants[base + PEASANT_X], peasants[base + PEASANT_Y],
+				holding == null ? CARGO_NONE : holding.ordinal() + 1, amount);
 	}
 
+	/**
+	 * Adds an empty peasant at the given location
+	 *
+	 * @param x
+	 * @param y
+	 * @return the unit id of the new peasant
+	 */
+	public int addPeasant(int x, int y) {
+		int unitID = getPeasantCount();
+
+		peasants = Arrays.copyOf(peasants, peasants.length + PEASANT_SIZE);
+		ownsPeasants = true;
+		clearCachedCost();
+
+		peasants[unitID * PEASANT_SIZE + PEASANT_X] = x;
+		peasants[unitID * PEASANT_SIZE + PEASANT_Y] = y;
+		peasants[unitID * PEASANT_SIZE + PEASANT_CARGO] = CARGO_NONE;
+
+		zobrist += ZobristHash.peasantCount(unitID + 1) - ZobristHash.peasantCount(unitID) + peasantKey(unitID);
+		return unitID;
+	}
+
+	public int getPeasantCount() {
+		return peasants.length / PEASANT_SIZE;
+	}
+
+	public int getPeasantX(int unitID) {
+		return peasants[unitID * PEASANT_SIZE + PEASANT_X];
+	}
+
+	public int getPeasantY(int unitID) {
+		return peasants[unitID * PEASANT_SIZE + PEASANT_Y];
+	}
+
+	public Position getPeasantPosition(int unitID) {
+		return new Position(peasants[unitID * PEASANT_SIZE + PEASANT_X], peasants[unitID * PEASANT_SIZE + PEASANT_Y]);
+	}
+
+	/**
+	 * @param unitID
+	 * @return what the peasant is carrying, null if nothing
+	 */
+	public ResourceType getPeasantHolding(int unitID) {
+		int cargo = peasants[unitID * PEASANT_SIZE + PEASANT_CARGO];
+		return cargo == CARGO_NONE ? null : ResourceType.values()[cargo - 1];
+	}
+
+	public int getPeasantAmount(int unitID) {
+		return peasants[unitID * PEASANT_SIZE + PEASANT_AMOUNT];
+	}
+
+	/**
+	 * A Peasant object describing one peasant in this state. It is a snapshot,
+	 * changing it does not change the state.
+	 *
+	 * @param unitID
+	 * @return
+	 */
+	public Peasant getPeasant(int unitID) {
+		return new Peasant(getPeasantHolding(unitID), getPeasantAmount(unitID), getPeasantPosition(unitID), unitID);
+	}
+
+	/**
+	 * Snapshots of all the peasants, see getPeasant
+	 *
+	 * @return
+	 */
 	public ArrayList<Peasant> getPeasants() {
-		return peasants;
+		ArrayList<Peasant> result = new ArrayList<Peasant>();
+
+		for (int i = 0; i < getPeasantCount(); i++) {
+			result.add(getPeasant(i));
+		}
+
+		return result;
 	}
 
-	public void setPeasants(ArrayList<Peasant> peasants) {
-		this.peasants = peasants;
+	public int getResourceAmount(int resourceID) {
+		return resourceAmounts.get(resourceID);
 	}
 
-	public ArrayList<Forest> getForests() {
-		return forests;
+	/**
+	 * @param resource
+	 * @return the amount left at a forest or goldmine, 0 for anything else
+	 */
+	private int getResourceAmount(MapObject resource) {
+		int resourceID = PlanningMap.getResourceID(resource);
+		return resourceID < 0 ? 0 : resourceAmounts.get(resourceID);
 	}
 
-	public void setForests(ArrayList<Forest> forests) {
-		this.forests = forests;
+	/**
+	 * Sets the amount left at a resource. The parent's table is not touched,
+	 * this state gets a new table sharing all the other chunks with it.
+	 *
+	 * @param resourceID
+	 * @param amount
+	 */
+	public void setResourceAmount(int resourceID, int amount) {
+		clearCachedCost();
+		zobrist += ZobristHash.resource(resourceID, amount)
+				- ZobristHash.resource(resourceID, resourceAmounts.get(resourceID));
+		resourceAmounts = resourceAmounts.set(resourceID, amount);
 	}
 
-	public ArrayList<GoldMine> getGoldMines() {
-		return goldMines;
+	public ArrayList<StripsAction> getParentAction() {
+		return parentAction;
 	}
 
-	public void setGoldMines(ArrayList<GoldMine> goldMines) {
-		this.goldMines = goldMines;
+	public void setParentAction(ArrayList<StripsAction> parentAction) {
+		this.parentAction = parentAction;
 	}
 
-	public TownHall getTownHall() {
-		return townHall;
+	public GameState getParentState() {
+		return parentState;
 	}
 
-	public void setTownHall(TownHall townHall) {
-		this.townHall = townHall;
+	public void setParentState(GameState parentState) {
+		this.parentState = parentState;
 	}
 
-	public int getGoalWood() {
-		return goalWood;
+	public PlanningMap getMap() {
+		return map;
 	}
 
-	public void setGoalWood(int goalWood) {
-		this.goalWood = goalWood;
+	public TownHall getTownHall() {
+		return map.getTownHall();
 	}
 
-	public int getGoalGold() {
-		return goalGold;
+	public int getGoalWood() {
+		return goalWood;
 	}
 
-	public void setGoalGold(int goalGold) {
-		this.goalGold = goalGold;
+	public int getGoalGold() {
+		return goalGold;
 	}
 
 	public int getMyWood() {
@@ -1346,6 +1085,8 @@ public class GameState implements Comparable<GameState> {
 	}
 
 	public void setMyWood(int myWood) {
+		clearCachedCost();
+		zobrist += ZobristHash.wood(myWood) - ZobristHash.wood(this.myWood);
 		this.myWood = myWood;
 	}
 
@@ -1354,6 +1095,8 @@ public class GameState implements Comparable<GameState> {
 	}
 
 	public void setMyGold(int myGold) {
+		clearCachedCost();
+		zobrist += ZobristHash.gold(myGold) - ZobristHash.gold(this.myGold);
 		this.myGold = myGold;
 	}
 
@@ -1361,59 +1104,52 @@ public class GameState implements Comparable<GameState> {
 		return playerNum;
 	}
 
-	public void setPlayerNum(int playerNum) {
-		this.playerNum = playerNum;
-	}
-
-	public State.StateView getState() {
-		return state;
-	}
-
-	public void setState(State.StateView state) {
-		this.state = state;
-	}
-
 	public int getTotalWoodOnMap() {
-		return totalWoodOnMap;
-	}
-
-	public void setTotalWoodOnMap(int totalWoodOnMap) {
-		this.totalWoodOnMap = totalWoodOnMap;
+		return map.getTotalWoodOnMap();
 	}
 
 	public int getTotalGoldOnMap() {
-		return totalGoldOnMap;
-	}
-
-	public void setTotalGoldOnMap(int totalGoldOnMap) {
-		this.totalGoldOnMap = totalGoldOnMap;
+		return map.getTotalGoldOnMap();
 	}
 
 	public boolean isBuildPeasants() {
 		return buildPeasants;
 	}
 
-	public int getTotalFoodOnMap() {
-		return totalFoodOnMap;
+	public int getMacroTrips() {
+		return macroTrips;
 	}
 
-	public void setTotalFoodOnMap(int totalFoodOnMap) {
-		this.totalFoodOnMap = totalFoodOnMap;
+	public int getTotalFoodOnMap() {
+		return map.getSupplyCap();
 	}
 
 	public void setMyCost(int cost) {
 		this.myCost = cost;
+		this.cost = Double.NaN;
 	}
 
 	public int getMyCost() {
 		return this.myCost;
 	}
 
+	public long getZobrist() {
+		return zobrist;
+	}
+
+	int getOpenIndex() {
+		return openIndex;
+	}
+
+	void setOpenIndex(int openIndex) {
+		this.openIndex = openIndex;
+	}
+
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 
-		for (Peasant peasant : peasants) {
-			sb.append("[PEASANT: " + peasant.getPosition().toString() + "] \n");
+		for (int i = 0; i < getPeasantCount(); i++) {
+			sb.append("[PEASANT: " + getPeasantPosition(i).toString() + "] \n");
 		}
 
 		sb.append("[Action: " + this.parentAction.toString() + "] \n [HEURISTIC: " + heuristic() + "]");
@@ -9,10 +9,13 @@ package edu.cwru.sepia.agent.planner;
 public class GoldMine extends MapObject {
 
 	private int resourceQuantity;
+	// index of this resource in the PlanningMap
+	private int resourceID;
 
-	public GoldMine(boolean isEmpty, int quantity, Position pos) {
-		super(isEmpty, "GOLDMINE", pos);
+	public GoldMine(boolean isEmpty, int quantity, Position pos, int resourceID) {
+		super(isEmpty, MapObjectType.GOLDMINE, pos);
 		this.resourceQuantity = quantity;
+		this.resourceID = resourceID;
 	}
 
 	public void setResourceQuantity(int newQuantity) {
@@ -22,4 +25,8 @@ public class GoldMine extends MapObject {
 	public int getResourceQuantity() {
 		return resourceQuantity;
 	}
+
+	public int getResourceID() {
+		return resourceID;
+	}
 }
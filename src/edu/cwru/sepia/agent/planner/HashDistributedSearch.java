@@ -0,0 +1,295 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hash distributed A* (HDA*). Several workers search at the same time, and
+ * every state belongs to exactly one of them, picked from its Zobrist hash.
+ * Each worker has its own open list and its own table of the states it has
+ * seen. A worker that generates a child owned by someone else puts it on the
+ * owner's inbox, a lock free queue; the owner checks it for duplicates and
+ * adds it to its open list. No lists are shared and nothing is locked.
+ *
+ * The workers don't expand in strict f order between them, so the first goal
+ * found need not be the cheapest. The cheapest goal found so far is kept as
+ * the incumbent, and a worker only expands states whose f is below the
+ * incumbent's cost. The search is over when every worker has nothing below it
+ * left and no state is on its way to a worker. With an admissible heuristic
+ * the incumbent is then as cheap as the plan sequential A* finds.
+ *
+ * Telling when that is the case is done with one counter holding the number
+ * of busy workers plus the number of states sent but not yet taken out of an
+ * inbox. A sender counts a state before queueing it; a busy worker uncounts
+ * each state it takes in, while an idle worker keeps the first one's count as
+ * its own for becoming busy again; a worker that runs out of work uncounts
+ * itself. Only a busy worker sends, so once the counter is 0 it stays 0 and
+ * the search is done.
+ *
+ * The workers share one SearchBudget. When it runs out they all stop, and the
+ * incumbent is the plan, or the best partial one if there is no incumbent.
+ *
+ * @author Anna He
+ *
+ */
+class HashDistributedSearch {
+
+	private final int maxChildren;
+	private final boolean goalOnGeneration;
+	private final Worker[] workers;
+
+	// busy workers plus states sent but not taken in yet, see above
+	private final AtomicLong work = new AtomicLong();
+	// cheapest goal state found so far, null until one is found
+	private final AtomicReference<GameState> bestGoal = new AtomicReference<GameState>();
+	private volatile boolean finished = false;
+	// whatever a worker died of, rethrown by search
+	private volatile Throwable failure = null;
+	private SearchBudget budget;
+	// the budget that ran out, null until one does
+	private volatile PlanStatus outOfBudget = null;
+
+	/**
+	 * @param threads
+	 *            number of workers
+	 * @param maxChildren
+	 *            see Planner.setMaxChildren
+	 * @param goalOnGeneration
+	 *            see Planner.setGoalOnGeneration
+	 */
+	HashDistributedSearch(int threads, int maxChildren, boolean goalOnGeneration) {
+		this.maxChildren = maxChildren;
+		this.goalOnGeneration = goalOnGeneration;
+		this.workers = new Worker[Math.max(1, threads)];
+
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(i);
+		}
+	}
+
+	/**
+	 * Runs the workers until the search is over. Can only be called once.
+	 *
+	 * @param startState
+	 * @param budget
+	 * @return the cheapest plan, with the statistics of all workers added up
+	 */
+	PlanResult search(GameState startState, SearchBudget budget) {
+		this.budget = budget;
+		SearchStatistics statistics = new SearchStatistics();
+		statistics.start();
+
+		// every worker starts out busy
+		work.set(workers.length);
+		send(startState);
+
+		Thread[] threads = new Thread[workers.length];
+		for (int i = 0; i < workers.length; i++) {
+			threads[i] = new Thread(workers[i], "HDA* worker " + i);
+			threads[i].start();
+		}
+
+		try {
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			finished = true;
+			Thread.currentThread().interrupt();
+		}
+
+		for (Worker worker : workers) {
+			statistics.add(worker.statistics);
+		}
+		statistics.stop();
+
+		if (failure != null) {
+			throw new IllegalStateException("A search worker failed", failure);
+		}
+
+		GameState goal = bestGoal.get();
+		if (goal == null && outOfBudget != null) {
+			return budget.partial(outOfBudget, statistics);
+		}
+		return new PlanResult(goal == null ? null : Planner.getPath(goal), goal, statistics);
+	}
+
+	/**
+	 * The worker a state belongs to. The hash is mixed first because
+	 * GameState.hashCode uses the same bits and the workers' tables would
+	 * otherwise only use some of their buckets.
+	 *
+	 * @param state
+	 * @return
+	 */
+	private int owner(GameState state) {
+		return (int) (((state.getZobrist() * 0x9E3779B97F4A7C15L) >>> 32) % workers.length);
+	}
+
+	private void send(GameState state) {
+		work.incrementAndGet();
+		workers[owner(state)].inbox.add(state);
+	}
+
+	private int bestCost() {
+		GameState goal = bestGoal.get();
+		return goal == null ? Integer.MAX_VALUE : goal.getMyCost();
+	}
+
+	/**
+	 * Makes the goal the incumbent if it is cheaper than the one there is
+	 *
+	 * @param goal
+	 */
+	private void offerGoal(GameState goal) {
+		while (true) {
+			GameState current = bestGoal.get();
+
+			if (current != null && current.getMyCost() <= goal.getMyCost()) {
+				return;
+			}
+
+			if (bestGoal.compareAndSet(current, goal)) {
+				return;
+			}
+		}
+	}
+
+	private class Worker implements Runnable {
+
+		private final int id;
+		// states sent to this worker by the others
+		private final ConcurrentLinkedQueue<GameState> inbox = new ConcurrentLinkedQueue<GameState>();
+
+		// the rest is only touched by this worker's thread
+		private final OpenList openList = new OpenList();
+		// cheapest copy seen of every state this worker owns, whether it is
+		// on the open list or already expanded
+		private final Map<GameState, GameState> seen = new HashMap<GameState, GameState>();
+		private final SearchStatistics statistics = new SearchStatistics();
+		private boolean busy = true;
+
+		Worker(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!finished) {
+					step();
+				}
+			} catch (Throwable t) {
+				failure = t;
+				finished = true;
+			}
+		}
+
+		private void step() {
+			GameState state;
+			while ((state = inbox.poll()) != null) {
+				if (busy) {
+					work.decrementAndGet();
+				} else {
+					busy = true;
+				}
+				receive(state);
+			}
+
+			GameState next = openList.peek();
+
+			if (next != null && next.getCost() < bestCost()) {
+				openList.poll();
+				expand(next);
+				return;
+			}
+
+			// nothing left that could beat the incumbent
+			if (busy) {
+				busy = false;
+				work.decrementAndGet();
+			}
+
+			if (work.get() == 0) {
+				finished = true;
+			} else {
+				Thread.yield();
+			}
+		}
+
+		/**
+		 * Adds a state this worker owns to its open list, unless it has
+		 * already seen the state as cheaply
+		 *
+		 * @param state
+		 */
+		private void receive(GameState state) {
+			GameState existing = seen.get(state);
+
+			if (existing != null) {
+				if (existing.getMyCost() <= state.getMyCost()) {
+					return;
+				}
+				statistics.decreasedKey();
+				// put would keep the old state as the key
+				seen.remove(existing);
+			}
+
+			seen.put(state, state);
+
+			if (state.isGoal()) {
+				offerGoal(state);
+				return;
+			}
+
+			if (existing != null && openList.contains(existing)) {
+				// same world reached more cheaply. As in the sequential
+				// search the new state takes the old one's place
+				openList.decreaseKey(existing, state);
+			} else {
+				// new, or the old one was already expanded and the new one
+				// is expanded again
+				openList.add(state);
+			}
+			statistics.openListSize(openList.size());
+		}
+
+		private void expand(GameState state) {
+			PlanStatus spent = budget.spend(state);
+			if (spent != null) {
+				outOfBudget = spent;
+				finished = true;
+				return;
+			}
+
+			statistics.expanded();
+
+			Iterator<GameState> children = state.successors(maxChildren);
+
+			while (children.hasNext()) {
+				GameState child = children.next();
+				statistics.generated(1);
+
+				if (goalOnGeneration && child.isGoal()) {
+					offerGoal(child);
+					finished = true;
+					return;
+				}
+
+				if (child.getCost() >= bestCost()) {
+					continue;
+				}
+
+				if (owner(child) == id) {
+					receive(child);
+				} else {
+					send(child);
+				}
+			}
+		}
+	}
+}
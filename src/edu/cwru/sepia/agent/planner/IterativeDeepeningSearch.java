@@ -0,0 +1,129 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Iterative deepening A* (IDA*). Each iteration is a depth first search that
+ * doesn't go past states whose f is above a bound. The first bound is the f
+ * of the start state, and every next one is the smallest f that went over the
+ * last one, so the first goal reached is as cheap as the one A* finds.
+ *
+ * Nothing but the path to the current state and the children still to try
+ * along it is kept, so memory grows with the depth of the plan and not with
+ * the number of states searched. The price is searching the states near the
+ * start again in every iteration, and searching a state again for every path
+ * reaching it. A TranspositionTable of fixed size cuts down the second: a
+ * state reached again in the same iteration no cheaper than before is
+ * skipped. Without a table, states already on the path are skipped instead.
+ *
+ * @author Anna He
+ *
+ */
+class IterativeDeepeningSearch {
+
+	private final int maxChildren;
+	// null to search without one
+	private final TranspositionTable table;
+
+	/**
+	 * @param maxChildren
+	 *            see Planner.setMaxChildren
+	 * @param tableSize
+	 *            states the transposition table holds, 0 for no table
+	 */
+	IterativeDeepeningSearch(int maxChildren, int tableSize) {
+		this.maxChildren = maxChildren;
+		this.table = tableSize > 0 ? new TranspositionTable(tableSize) : null;
+	}
+
+	PlanResult search(GameState startState, SearchBudget budget) {
+		SearchStatistics statistics = new SearchStatistics();
+		statistics.start();
+
+		if (startState.isGoal()) {
+			statistics.stop();
+			return new PlanResult(Planner.getPath(startState), startState, statistics);
+		}
+
+		double bound = startState.getCost();
+		int iteration = 0;
+
+		while (bound != Double.POSITIVE_INFINITY) {
+			iteration++;
+			double nextBound = Double.POSITIVE_INFINITY;
+
+			// path.get(d) is the state at depth d and untried.get(d) the
+			// children of it that haven't been searched yet
+			List<GameState> path = new ArrayList<GameState>();
+			List<Iterator<GameState>> untried = new ArrayList<Iterator<GameState>>();
+			path.add(startState);
+			untried.add(children(startState, statistics));
+
+			while (!path.isEmpty()) {
+				Iterator<GameState> children = untried.get(untried.size() - 1);
+
+				if (!children.hasNext()) {
+					path.remove(path.size() - 1);
+					untried.remove(untried.size() - 1);
+					continue;
+				}
+
+				GameState child = children.next();
+				double f = child.getCost();
+
+				if (f > bound) {
+					nextBound = Math.min(nextBound, f);
+					continue;
+				}
+
+				if (child.isGoal()) {
+					statistics.stop();
+					return new PlanResult(Planner.getPath(child), child, statistics);
+				}
+
+				if (table != null ? table.seenAsCheaply(child.getZobrist(), child.getMyCost(), iteration)
+						: path.contains(child)) {
+					continue;
+				}
+
+				PlanStatus outOfBudget = budget.spend(child);
+				if (outOfBudget != null) {
+					statistics.stop();
+					return budget.partial(outOfBudget, statistics);
+				}
+
+				path.add(child);
+				untried.add(children(child, statistics));
+				statistics.openListSize(path.size());
+			}
+
+			bound = nextBound;
+		}
+
+		statistics.stop();
+		return new PlanResult(null, null, statistics);
+	}
+
+	/**
+	 * @param state
+	 * @param statistics
+	 * @return the children of state, cheapest first so the goal is reached
+	 *         early in the last iteration
+	 */
+	private Iterator<GameState> children(GameState state, SearchStatistics statistics) {
+		statistics.expanded();
+
+		List<GameState> children = new ArrayList<GameState>();
+		Iterator<GameState> successors = state.successors(maxChildren);
+		while (successors.hasNext()) {
+			children.add(successors.next());
+		}
+
+		statistics.generated(children.size());
+		Collections.sort(children);
+		return children.iterator();
+	}
+}
@@ -0,0 +1,328 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import edu.cwru.sepia.agent.planner.actions.HarvestAction;
+import edu.cwru.sepia.agent.planner.actions.MoveAction;
+import edu.cwru.sepia.agent.planner.actions.StripsAction;
+import edu.cwru.sepia.agent.planner.actions.StripsActionType;
+import edu.cwru.sepia.agent.planner.actions.TripAction;
+
+/**
+ * Walks the joint actions of a state one at a time. Every peasant does one of
+ * its own actions each step, so the joint actions are the cartesian product of
+ * the peasants' child lists, however many peasants there are.
+ *
+ * The product is walked depth first, one peasant per level, and the merged
+ * state of the peasants chosen so far is kept for each level. A choice that
+ * can't be combined with the ones before it (the resource is already used up
+ * by them, a second peasant is being built, two peasants would end on the
+ * same tile) is rejected right there, which skips every combination that
+ * starts with it without building any of them.
+ *
+ * SEPIA handles two units walking onto the same tile badly, so joint actions
+ * that do that are left out. Peasants making trips don't count: they are
+ * only by the townhall for a moment at the end of each trip. If that leaves
+ * nothing at all, the walk is redone allowing them, so a state never ends up
+ * without children because of it.
+ *
+ * Peasants standing on the same tile carrying the same are interchangeable:
+ * giving the first one action a and the second one b ends in the same world
+ * as the other way round (GameState.equals ignores which peasant is which).
+ * So for each such pair only the orders where the later peasant's choice
+ * does not come before the earlier one's are walked.
+ *
+ * An optional limit stops the walk after that many joint actions.
+ *
+ * The walk can also be restricted to a range of choices for the first
+ * peasant, so that separate iterators cover separate parts of the product
+ * (see ParallelExpansion). Such a slice doesn't redo its part allowing shared
+ * tiles on its own, since only all the slices together know whether nothing
+ * was found.
+ *
+ * @author Anna He
+ *
+ */
+public class JointActionIterator implements Iterator<GameState> {
+
+	private final GameState parent;
+	// peasantChildren.get(i) holds the children of parent where only peasant
+	// i acted
+	private final List<ArrayList<GameState>> peasantChildren;
+
+	// index of the chosen child for each peasant
+	private final int[] choice;
+	// twin[i] is the last peasant before i that is interchangeable with it,
+	// -1 if there is none
+	private final int[] twin;
+	// most joint actions to produce, 0 for no limit
+	private final int maxChildren;
+	private int produced = 0;
+	// merged[i] is the state after peasants 0 to i did their chosen actions
+	private final GameState[] merged;
+	// deepest level whose choice is being tried
+	private int level = 0;
+	// the first peasant's choices walked are firstFrom up to but not
+	// including firstTo
+	private final int firstFrom;
+	private final int firstTo;
+
+	private boolean allowSharedTiles;
+	// redo the walk allowing shared tiles if it finds nothing
+	private final boolean retrySharedTiles;
+	private boolean foundAny = false;
+	private GameState next = null;
+
+	public JointActionIterator(GameState parent, List<ArrayList<GameState>> peasantChildren, int maxChildren) {
+		this(parent, peasantChildren, maxChildren, 0, peasantChildren.isEmpty() ? 0 : peasantChildren.get(0).size(),
+				false, true);
+	}
+
+	/**
+	 * Walks only the joint actions where the first peasant's choice is in
+	 * [from, to)
+	 *
+	 * @param parent
+	 * @param peasantChildren
+	 * @param from
+	 * @param to
+	 * @param allowSharedTiles
+	 *            true to include joint actions that put two peasants on the
+	 *            same tile
+	 * @return
+	 */
+	static JointActionIterator slice(GameState parent, List<ArrayList<GameState>> peasantChildren, int from, int to,
+			boolean allowSharedTiles) {
+		return new JointActionIterator(parent, peasantChildren, 0, from, to, allowSharedTiles, false);
+	}
+
+	private JointActionIterator(GameState parent, List<ArrayList<GameState>> peasantChildren, int maxChildren,
+			int firstFrom, int firstTo, boolean allowSharedTiles, boolean retrySharedTiles) {
+		this.parent = parent;
+		this.peasantChildren = peasantChildren;
+		this.maxChildren = maxChildren;
+		this.firstFrom = firstFrom;
+		this.firstTo = firstTo;
+		this.allowSharedTiles = allowSharedTiles;
+		this.retrySharedTiles = retrySharedTiles;
+		this.choice = new int[peasantChildren.size()];
+		this.merged = new GameState[peasantChildren.size()];
+		this.twin = new int[peasantChildren.size()];
+
+		for (int i = 0; i < twin.length; i++) {
+			twin[i] = -1;
+
+			// the children lists must match as well, they differ when only
+			// one of the two just moved
+			for (int j = i - 1; j >= 0 && twin[i] < 0; j--) {
+				if (parent.interchangeable(i, j) && peasantChildren.get(i).size() == peasantChildren.get(j).size()) {
+					twin[i] = j;
+				}
+			}
+		}
+
+		start();
+		this.next = findNext();
+	}
+
+	private void start() {
+		if (choice.length == 0) {
+			level = -1;
+		} else {
+			level = 0;
+			choice[0] = firstFrom - 1;
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	@Override
+	public GameState next() {
+		if (next == null) {
+			throw new NoSuchElementException();
+		}
+
+		GameState result = next;
+		produced++;
+		next = maxChildren > 0 && produced >= maxChildren ? null : findNext();
+		return result;
+	}
+
+	/**
+	 * Moves the choices on to the next combination that survives all the
+	 * checks
+	 *
+	 * @return the merged state, null when there are none left
+	 */
+	private GameState findNext() {
+		while (level >= 0) {
+			choice[level]++;
+
+			if (choice[level] >= (level == 0 ? firstTo : peasantChildren.get(level).size())) {
+				level--;
+				continue;
+			}
+
+			GameState state = extend(level);
+			if (state == null) {
+				continue;
+			}
+
+			merged[level] = state;
+
+			if (level == choice.length - 1) {
+				foundAny = true;
+				return state;
+			}
+
+			level++;
+			choice[level] = twin[level] < 0 ? -1 : choice[twin[level]] - 1;
+		}
+
+		if (!foundAny && !allowSharedTiles && retrySharedTiles) {
+			allowSharedTiles = true;
+			start();
+			return findNext();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Adds the chosen action of one peasant to the merged state of the
+	 * peasants before it
+	 *
+	 * @param peasant
+	 * @return the new merged state, null if the action doesn't fit
+	 */
+	private GameState extend(int peasant) {
+		GameState child = peasantChildren.get(peasant).get(choice[peasant]);
+
+		if (!enoughLeftFor(peasant, child.getParentAction().get(0))) {
+			return null;
+		}
+
+		// the first peasant's child already is its merged state
+		if (peasant == 0) {
+			return child;
+		}
+
+		GameState state = parent.mergeBase(merged[peasant - 1], null);
+		if (!parent.mergeAction(state, child)) {
+			return null;
+		}
+
+		if (!allowSharedTiles && sharesTile(state, peasant)) {
+			return null;
+		}
+
+		if (peasant == choice.length - 1) {
+			ArrayList<StripsAction> actions = new ArrayList<StripsAction>();
+			for (int i = 0; i < choice.length; i++) {
+				actions.add(peasantChildren.get(i).get(choice[i]).getParentAction().get(0));
+			}
+			state.setParentAction(actions);
+		}
+
+		return state;
+	}
+
+	/**
+	 * Peasants heading for the same forest or goldmine each take a load of
+	 * 100 from it for every trip they make there. Like a single harvest, the
+	 * last load only needs something left, so every load before it has to be
+	 * full. The same check is made for the first peasant, so which peasants
+	 * get a resource doesn't depend on their order.
+	 *
+	 * @param peasant
+	 * @param action
+	 *            the action chosen for the peasant
+	 * @return false if the resource the action goes for can't supply every
+	 *         peasant so far that goes for it
+	 */
+	private boolean enoughLeftFor(int peasant, StripsAction action) {
+		int resourceID = targetResource(action);
+		if (resourceID < 0) {
+			return true;
+		}
+
+		int tripsThere = trips(action);
+		for (int i = 0; i < peasant; i++) {
+			StripsAction before = peasantChildren.get(i).get(choice[i]).getParentAction().get(0);
+			if (targetResource(before) == resourceID) {
+				tripsThere += trips(before);
+			}
+		}
+
+		return parent.getResourceAmount(resourceID) > 100 * (tripsThere - 1);
+	}
+
+	/**
+	 * @param action
+	 * @return the id of the forest or goldmine the action harvests or moves
+	 *         to, -1 for anything else
+	 */
+	private static int targetResource(StripsAction action) {
+		if (action instanceof HarvestAction) {
+			return PlanningMap.getResourceID(((HarvestAction) action).getResource());
+		} else if (action instanceof MoveAction) {
+			return PlanningMap.getResourceID(((MoveAction) action).getMapObject());
+		} else if (action instanceof TripAction) {
+			return PlanningMap.getResourceID(((TripAction) action).getResource());
+		}
+		return -1;
+	}
+
+	/**
+	 * @param action
+	 * @return how many loads of 100 the action takes from its resource
+	 */
+	private static int trips(StripsAction action) {
+		return action instanceof TripAction ? ((TripAction) action).getTrips() : 1;
+	}
+
+	/**
+	 * @param state
+	 * @param peasant
+	 *            the last peasant merged into state
+	 * @return true if any two peasants that have acted, including one built
+	 *         this step, stand on the same tile
+	 */
+	private boolean sharesTile(GameState state, int peasant) {
+		int count = state.getPeasantCount();
+
+		for (int i = 0; i < count; i++) {
+			if (i > peasant && i < choice.length || makesTrip(i)) {
+				continue;
+			}
+
+			for (int j = i + 1; j < count; j++) {
+				if (j > peasant && j < choice.length || makesTrip(j)) {
+					continue;
+				}
+
+				if (state.getPeasantX(i) == state.getPeasantX(j) && state.getPeasantY(i) == state.getPeasantY(j)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param peasant
+	 * @return true if the peasant's chosen action is a trip, false for a
+	 *         peasant built this step
+	 */
+	private boolean makesTrip(int peasant) {
+		return peasant < choice.length && peasantChildren.get(peasant).get(choice[peasant]).getParentAction().get(0)
+				.getAction() == StripsActionType.TRIP;
+	}
+}
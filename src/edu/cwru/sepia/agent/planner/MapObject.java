@@ -9,12 +9,12 @@ package edu.cwru.sepia.agent.planner;
 public abstract class MapObject {
 
 	private boolean isEmpty;
-	private String name;// what kind of object are you? ie. PEASANT, FOREST etc.
+	private MapObjectType type;// what kind of object are you? ie. PEASANT, FOREST etc.
 	private Position position;
 
-	public MapObject(boolean isEmpty, String name, Position position) {
+	public MapObject(boolean isEmpty, MapObjectType type, Position position) {
 		this.isEmpty = isEmpty;
-		this.name = name;
+		this.type = type;
 		this.position = position;
 	}
 
@@ -26,8 +26,8 @@ public abstract class MapObject {
 		return isEmpty;
 	}
 
-	public String getName() {
-		return name;
+	public MapObjectType getType() {
+		return type;
 	}
 
 	public Position getPosition() {
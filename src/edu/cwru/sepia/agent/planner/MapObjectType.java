@@ -0,0 +1,11 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * What kind of object a MapObject is
+ * 
+ * @author Anna He
+ *
+ */
+public enum MapObjectType {
+	PEASANT, TOWNHALL, FOREST, GOLDMINE
+}
@@ -0,0 +1,225 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Simplified memory-bounded A* (SMA*). It is A* with a cap on the open list:
+ * whenever the open list holds more than maxOpenStates states, the worst one
+ * (highest f, shallowest on a tie) is dropped.
+ *
+ * What a dropped state was worth is not lost. Its f is backed up into its
+ * parent, which keeps the lowest f of its forgotten children. Once all of a
+ * parent's children have been dropped, the parent goes back on the open list
+ * with that f, so the subtree is only grown again when nothing else looks
+ * better. A regenerated child gets at least its parent's f (pathmax), so the
+ * search doesn't keep circling through the same forgotten states.
+ *
+ * Instead of a closed list, the states expanded are remembered in a fixed size
+ * TranspositionTable, by hash and cost only, and a child already expanded at
+ * most as cheaply is skipped. A state dropped from the open list is taken out
+ * of the table again, so it can be regenerated. The states held are the open
+ * ones and the chains of parents leading to them, plus the table, which
+ * doesn't grow. When the cap is big enough to hold a cheapest plan, the plan
+ * found is as cheap as A*'s. With less room the plan may cost more or none
+ * may be found, but the search doesn't run out of memory.
+ *
+ * @author Anna He
+ *
+ */
+class MemoryBoundedSearch {
+
+	/**
+	 * A state in the search tree, with the bookkeeping for backing up f
+	 */
+	private static class Node {
+		final GameState state;
+		final Node parent;
+		// order of creation, breaks ties between nodes so the open set can
+		// hold nodes that compare equal otherwise
+		final long serial;
+		// f of this node, raised by pathmax and by backed up values
+		double f;
+		// lowest f of the children that were dropped since the last time it
+		// was expanded
+		double forgotten = Double.POSITIVE_INFINITY;
+		// children of the last expansion that are still in memory
+		int liveChildren = 0;
+
+		Node(GameState state, Node parent, long serial, double f) {
+			this.state = state;
+			this.parent = parent;
+			this.serial = serial;
+			this.f = f;
+		}
+	}
+
+	// iteration number the table entries are made with, there is only one
+	private static final int EXPANDED = 1;
+
+	private final int maxChildren;
+	private final int maxOpenStates;
+	// states expanded and their cost, null to go without
+	private final TranspositionTable expanded;
+
+	// lowest f first, then the most expensive (deepest) so far, then oldest.
+	// The last node is the worst
+	private final TreeSet<Node> openList = new TreeSet<Node>((a, b) -> {
+		int compare = Double.compare(a.f, b.f);
+		if (compare == 0) {
+			compare = Integer.compare(b.state.getMyCost(), a.state.getMyCost());
+		}
+		return compare != 0 ? compare : Long.compare(a.serial, b.serial);
+	});
+	private final Map<GameState, Node> openStates = new HashMap<GameState, Node>();
+	private long serials = 0;
+	private SearchStatistics statistics;
+
+	/**
+	 * @param maxChildren
+	 *            see Planner.setMaxChildren
+	 * @param maxOpenStates
+	 *            most states kept on the open list, at least 2
+	 * @param tableSize
+	 *            expanded states remembered, 0 to remember none
+	 */
+	MemoryBoundedSearch(int maxChildren, int maxOpenStates, int tableSize) {
+		this.maxChildren = maxChildren;
+		this.maxOpenStates = Math.max(2, maxOpenStates);
+		this.expanded = tableSize > 0 ? new TranspositionTable(tableSize) : null;
+	}
+
+	PlanResult search(GameState startState, SearchBudget budget) {
+		statistics = new SearchStatistics();
+		statistics.start();
+
+		addOpen(new Node(startState, null, serials++, startState.getCost()));
+
+		while (!openList.isEmpty()) {
+			Node best = openList.pollFirst();
+			openStates.remove(best.state);
+			statistics.expanded();
+
+			if (best.state.isGoal()) {
+				statistics.stop();
+				return new PlanResult(Planner.getPath(best.state), best.state, statistics);
+			}
+
+			PlanStatus outOfBudget = budget.spend(best.state);
+			if (outOfBudget != null) {
+				statistics.stop();
+				return budget.partial(outOfBudget, statistics);
+			}
+
+			expand(best);
+
+			while (openList.size() > maxOpenStates) {
+				Node worst = openList.pollLast();
+				openStates.remove(worst.state);
+				if (expanded != null) {
+					expanded.remove(worst.state.getZobrist());
+				}
+				statistics.evicted();
+				childGone(worst.parent, worst.f);
+			}
+
+			statistics.openListSize(openList.size());
+		}
+
+		statistics.stop();
+		return new PlanResult(null, null, statistics);
+	}
+
+	private void expand(Node node) {
+		node.forgotten = Double.POSITIVE_INFINITY;
+		node.liveChildren = 0;
+
+		if (expanded != null) {
+			expanded.put(node.state.getZobrist(), node.state.getMyCost(), EXPANDED);
+		}
+
+		Iterator<GameState> children = node.state.successors(maxChildren);
+
+		while (children.hasNext()) {
+			GameState child = children.next();
+			statistics.generated(1);
+
+			if (expanded != null && expanded.contains(child.getZobrist(), child.getMyCost(), EXPANDED)) {
+				continue;
+			}
+
+			Node existing = openStates.get(child);
+			if (existing != null && existing.state.getMyCost() <= child.getMyCost()) {
+				continue;
+			}
+
+			// counted before the replaced node is let go, so node never looks
+			// childless in between
+			node.liveChildren++;
+
+			if (existing != null) {
+				// same world reached more cheaply, the new node covers it.
+				// It leaves the map first, put would keep its state as the key
+				openList.remove(existing);
+				openStates.remove(existing.state);
+				statistics.decreasedKey();
+				childGone(existing.parent, Double.POSITIVE_INFINITY);
+			}
+
+			addOpen(new Node(child, node, serials++, Math.max(node.f, child.getCost())));
+		}
+
+		if (node.liveChildren == 0) {
+			// nothing new below it
+			childGone(node.parent, Double.POSITIVE_INFINITY);
+		}
+	}
+
+	private void addOpen(Node node) {
+		openList.add(node);
+		openStates.put(node.state, node);
+	}
+
+	/**
+	 * Backs the f of a child that left memory up into its parent. A parent
+	 * left without children in memory goes back on the open list, or if none
+	 * of its children can lead anywhere, leaves memory itself.
+	 *
+	 * @param parent
+	 * @param f
+	 *            of the child, infinite if it is a dead end or covered
+	 *            elsewhere
+	 */
+	private void childGone(Node parent, double f) {
+		while (parent != null) {
+			parent.forgotten = Math.min(parent.forgotten, f);
+			parent.liveChildren--;
+
+			if (parent.liveChildren > 0) {
+				return;
+			}
+
+			if (parent.forgotten != Double.POSITIVE_INFINITY) {
+				parent.f = Math.max(parent.f, parent.forgotten);
+				parent.forgotten = Double.POSITIVE_INFINITY;
+
+				// a cheaper copy of it may have been opened meanwhile
+				Node existing = openStates.get(parent.state);
+				if (existing == null || existing.state.getMyCost() > parent.state.getMyCost()) {
+					if (existing != null) {
+						openList.remove(existing);
+						openStates.remove(existing.state);
+						childGone(existing.parent, Double.POSITIVE_INFINITY);
+					}
+					addOpen(parent);
+					return;
+				}
+			}
+
+			f = Double.POSITIVE_INFINITY;
+			parent = parent.parent;
+		}
+	}
+}
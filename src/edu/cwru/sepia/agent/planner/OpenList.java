@@ -0,0 +1,155 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.Arrays;
+
+/**
+ * The open list used by the A* search. It is a binary min-heap ordered by
+ * GameState.compareTo, so the cheapest state is always at the root. Every
+ * state remembers its own slot in the heap, which lets us lower the cost of a
+ * state that is already on the frontier (decrease-key) in O(log n) without
+ * searching for it.
+ *
+ * @author Anna He
+ *
+ */
+public class OpenList {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private GameState[] heap = new GameState[INITIAL_CAPACITY];
+	private int size = 0;
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * True if the state is currently sitting on the frontier
+	 *
+	 * @param state
+	 * @return
+	 */
+	public boolean contains(GameState state) {
+		int index = state.getOpenIndex();
+		return index >= 0 && index < size && heap[index] == state;
+	}
+
+	/**
+	 * Adds a state to the frontier
+	 *
+	 * @param state
+	 */
+	public void add(GameState state) {
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, size * 2);
+		}
+
+		heap[size] = state;
+		state.setOpenIndex(size);
+		size++;
+		siftUp(size - 1);
+	}
+
+	/**
+	 * Returns the cheapest state without removing it
+	 *
+	 * @return
+	 */
+	public GameState peek() {
+		return size == 0 ? null : heap[0];
+	}
+
+	/**
+	 * Removes and returns the cheapest state on the frontier
+	 *
+	 * @return
+	 */
+	public GameState poll() {
+		if (size == 0) {
+			return null;
+		}
+
+		GameState root = heap[0];
+		size--;
+
+		if (size > 0) {
+			heap[0] = heap[size];
+			heap[0].setOpenIndex(0);
+			siftDown(0);
+		}
+
+		heap[size] = null;
+		root.setOpenIndex(-1);
+		return root;
+	}
+
+	/**
+	 * Puts a cheaper copy of a state in the slot of the one on the frontier
+	 * and moves it towards the root. The two are the same world reached by
+	 * different paths, so the copy can't come after the old one.
+	 *
+	 * @param existing
+	 *            the state on the frontier
+	 * @param cheaper
+	 *            the state replacing it
+	 */
+	public void decreaseKey(GameState existing, GameState cheaper) {
+		if (!contains(existing)) {
+			throw new IllegalArgumentException("State is not on the open list");
+		}
+
+		int index = existing.getOpenIndex();
+		existing.setOpenIndex(-1);
+		heap[index] = cheaper;
+		cheaper.setOpenIndex(index);
+		siftUp(index);
+	}
+
+	private void siftUp(int index) {
+		GameState state = heap[index];
+
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+
+			if (state.compareTo(heap[parent]) >= 0) {
+				break;
+			}
+
+			heap[index] = heap[parent];
+			heap[index].setOpenIndex(index);
+			index = parent;
+		}
+
+		heap[index] = state;
+		state.setOpenIndex(index);
+	}
+
+	private void siftDown(int index) {
+		GameState state = heap[index];
+		int half = size >>> 1;
+
+		while (index < half) {
+			int child = 2 * index + 1;
+			int right = child + 1;
+
+			if (right < size && heap[right].compareTo(heap[child]) < 0) {
+				child = right;
+			}
+
+			if (state.compareTo(heap[child]) <= 0) {
+				break;
+			}
+
+			heap[index] = heap[child];
+			heap[index].setOpenIndex(index);
+			index = child;
+		}
+
+		heap[index] = state;
+		state.setOpenIndex(index);
+	}
+}
@@ -2,7 +2,9 @@ package edu.cwru.sepia.agent.planner;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
@@ -16,6 +18,8 @@ import edu.cwru.sepia.agent.planner.actions.DepositAction;
 import edu.cwru.sepia.agent.planner.actions.HarvestAction;
 import edu.cwru.sepia.agent.planner.actions.MoveAction;
 import edu.cwru.sepia.agent.planner.actions.StripsAction;
+import edu.cwru.sepia.agent.planner.actions.StripsActionType;
+import edu.cwru.sepia.agent.planner.actions.TripAction;
 import edu.cwru.sepia.environment.model.history.History;
 import edu.cwru.sepia.environment.model.state.State;
 import edu.cwru.sepia.environment.model.state.Template;
@@ -29,6 +33,8 @@ public class PEAgent extends Agent {
 
 	// The plan being executed
 	private Stack<StripsAction> plan = new Stack<StripsAction>();
+	// the actions of the plan handed out to SEPIA so far, in order
+	private List<StripsAction> executed = new ArrayList<StripsAction>();
 
 	// maps the real unit Ids to the plan's unit ids
 	// when you're planning you won't know the true unit IDs that sepia assigns.
@@ -163,7 +169,7 @@ public class PEAgent extends Agent {
 					// where even though a move failed, it says that it is
 					// complete
 				} else if (lastAction.get(peasantID).getFeedback() == ActionFeedback.COMPLETED) {
-					if (lastAction.toString().contains("COMPOUNDMOVE")) {
+					if (lastAction.get(peasantID).getAction().getType() == ActionType.COMPOUNDMOVE) {
 						if (!this.desiredDestination.get(peasantID)
 								.isAdjacent(new Position(stateView.getUnit(peasantID).getXPosition(),
 										stateView.getUnit(peasantID).getYPosition()))) {
@@ -195,6 +201,7 @@ public class PEAgent extends Agent {
 
 			checkCreatePeasant(stateView);
 
+			expandTrip(plan);
 			StripsAction stripsAction = plan.pop();
 			peasantID = this.peasantIdMap.get(getPeasantID(stripsAction));
 
@@ -208,7 +215,9 @@ public class PEAgent extends Agent {
 				return null;
 			}
 
-			if (stripsAction.getAction().equals("CREATE")) {
+			executed.add(stripsAction);
+
+			if (stripsAction.getAction() == StripsActionType.CREATE) {
 				Action action = createSepiaAction(stripsAction, peasantID);
 				sepiaAction.put(this.townhallId, action);
 				this.desiredAction.put(this.townhallId, action);
@@ -222,6 +231,50 @@ public class PEAgent extends Agent {
 		return sepiaAction;
 	}
 
+	/**
+	 * Switches to another plan from the same start, if it starts with the
+	 * actions executed so far. The rest of it replaces the rest of the current
+	 * plan. Actions are compared by their text, as written to the plan file.
+	 *
+	 * @param newPlan
+	 *            the first action on top, it isn't changed
+	 * @return false if execution has already gone another way than newPlan
+	 */
+	public boolean replacePlan(Stack<StripsAction> newPlan) {
+		Stack<StripsAction> rest = new Stack<StripsAction>();
+		rest.addAll(newPlan);
+
+		// executed only holds single actions, so trips are compared by what
+		// they stand for
+		for (StripsAction done : executed) {
+			expandTrip(rest);
+
+			if (rest.isEmpty() || !String.valueOf(rest.pop()).equals(String.valueOf(done))) {
+				return false;
+			}
+		}
+
+		plan = rest;
+		return true;
+	}
+
+	/**
+	 * Replaces a TripAction on top of a plan by the single actions it stands
+	 * for, the first one on top
+	 *
+	 * @param actions
+	 */
+	private static void expandTrip(Stack<StripsAction> actions) {
+		if (actions.isEmpty() || !(actions.peek() instanceof TripAction)) {
+			return;
+		}
+
+		List<StripsAction> trip = ((TripAction) actions.pop()).expand();
+		for (int i = trip.size() - 1; i >= 0; i--) {
+			actions.push(trip.get(i));
+		}
+	}
+
 	/**
 	 * Checks to see if a peasant is created, and if it is we pair the strips
 	 * unit ID with its actual ID
@@ -253,7 +306,7 @@ public class PEAgent extends Agent {
 	private Action createSepiaAction(StripsAction action, int peasantID) {
 
 		switch (action.getAction()) {
-		case "MOVE":
+		case MOVE:
 			MoveAction move = (MoveAction) action;
 			Action moveAction = Action.createCompoundMove(peasantID, move.getBestPosition().x,
 					move.getBestPosition().y);
@@ -262,7 +315,7 @@ public class PEAgent extends Agent {
 			System.out.println(moveAction.toString());
 			return moveAction;
 
-		case "HARVEST":
+		case HARVEST:
 			HarvestAction harvest = (HarvestAction) action;
 			Action harvestAction = Action.createPrimitiveGather(peasantID,
 					harvest.getPeasant().getPosition().getDirection(harvest.getResource().getPosition()));
@@ -272,7 +325,7 @@ public class PEAgent extends Agent {
 			System.out.println(harvestAction.toString());
 			return harvestAction;
 
-		case "DEPOSIT":
+		case DEPOSIT:
 			DepositAction deposit = (DepositAction) action;
 			Action depositAction = Action.createPrimitiveDeposit(peasantID, deposit.getPeasant().getPosition()
 					.getDirection(new Position(this.townHall.getXPosition(), this.townHall.getYPosition())));
@@ -281,7 +334,7 @@ public class PEAgent extends Agent {
 			System.out.println(depositAction.toString());
 			return depositAction;
 
-		case "CREATE":
+		case CREATE:
 			CreateAction create = (CreateAction) action;
 			Action createAction = Action.createPrimitiveProduction(this.townhallId, this.peasantTemplateId);
 
@@ -304,22 +357,22 @@ public class PEAgent extends Agent {
 	private int getPeasantID(StripsAction action) {
 
 		switch (action.getAction()) {
-		case "MOVE":
+		case MOVE:
 			MoveAction move = (MoveAction) action;
 
 			return move.getPeasant().getUnitID();
 
-		case "HARVEST":
+		case HARVEST:
 			HarvestAction harvest = (HarvestAction) action;
 
 			return harvest.getPeasant().getUnitID();
 
-		case "DEPOSIT":
+		case DEPOSIT:
 			DepositAction deposit = (DepositAction) action;
 
 			return deposit.getPeasant().getUnitID();
 
-		case "CREATE":
+		case CREATE:
 			CreateAction create = (CreateAction) action;
 
 			return create.getPeasant().getUnitID();
@@ -0,0 +1,144 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Builds the children of one state on several threads. The peasants' own
+ * children don't depend on each other, and neither do the parts of the joint
+ * action product that start with different choices for the first peasant, so
+ * both are split into tasks on a ForkJoinPool.
+ *
+ * Forking only pays off for wide expansions, so the work is estimated first
+ * and anything below the threshold is done on the calling thread, exactly as
+ * GameState.successors does it. Work is counted in children: for the
+ * peasants' own lists it is peasants times (resources + 2), an upper bound on
+ * what they can do, and for the joint actions it is the size of the product.
+ *
+ * The children come out in the same order as from GameState.successors. The
+ * expanded state is only read while its children are built, so the tasks
+ * can share it.
+ *
+ * @author Anna He
+ *
+ */
+class ParallelExpansion {
+
+	private final ForkJoinPool pool;
+	// least estimated work worth forking for
+	private final int threshold;
+
+	/**
+	 * @param pool
+	 *            where the tasks run, usually ForkJoinPool.commonPool()
+	 * @param threshold
+	 *            expansions with less work than this stay on the calling
+	 *            thread
+	 */
+	ParallelExpansion(ForkJoinPool pool, int threshold) {
+		this.pool = pool;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * @param state
+	 * @return all the children of state, same as GameState.generateChildren
+	 */
+	List<GameState> successors(GameState state) {
+		int peasants = state.getPeasantCount();
+
+		if (peasants < 2) {
+			return state.generateChildren();
+		}
+
+		List<ArrayList<GameState>> peasantChildren = peasantChildren(state,
+				peasants * (state.getMap().getResourceCount() + 2) >= threshold);
+
+		long combinations = 1;
+		for (ArrayList<GameState> children : peasantChildren) {
+			combinations *= children.size();
+		}
+
+		if (combinations < threshold || peasantChildren.get(0).size() < 2) {
+			List<GameState> children = new ArrayList<GameState>();
+			JointActionIterator joint = new JointActionIterator(state, peasantChildren, 0);
+			while (joint.hasNext()) {
+				children.add(joint.next());
+			}
+			return children;
+		}
+
+		List<GameState> children = joint(state, peasantChildren, false);
+
+		// as in JointActionIterator, if keeping peasants off each other's
+		// tiles leaves nothing, they are allowed to share
+		if (children.isEmpty()) {
+			children = joint(state, peasantChildren, true);
+		}
+
+		return children;
+	}
+
+	private List<ArrayList<GameState>> peasantChildren(GameState state, boolean fork) {
+		List<ArrayList<GameState>> peasantChildren = new ArrayList<ArrayList<GameState>>();
+
+		if (!fork) {
+			for (int i = 0; i < state.getPeasantCount(); i++) {
+				peasantChildren.add(state.getChildren(i));
+			}
+			return peasantChildren;
+		}
+
+		List<ForkJoinTask<ArrayList<GameState>>> tasks = new ArrayList<ForkJoinTask<ArrayList<GameState>>>();
+		for (int i = 0; i < state.getPeasantCount(); i++) {
+			int unitID = i;
+			tasks.add(submit(ForkJoinTask.adapt(() -> state.getChildren(unitID))));
+		}
+
+		for (ForkJoinTask<ArrayList<GameState>> task : tasks) {
+			peasantChildren.add(task.join());
+		}
+		return peasantChildren;
+	}
+
+	/**
+	 * Walks the joint action product in one slice per choice of the first
+	 * peasant
+	 */
+	private List<GameState> joint(GameState state, List<ArrayList<GameState>> peasantChildren,
+			boolean allowSharedTiles) {
+		List<ForkJoinTask<List<GameState>>> tasks = new ArrayList<ForkJoinTask<List<GameState>>>();
+
+		for (int i = 0; i < peasantChildren.get(0).size(); i++) {
+			int first = i;
+			tasks.add(submit(ForkJoinTask.adapt(() -> {
+				List<GameState> children = new ArrayList<GameState>();
+				JointActionIterator slice = JointActionIterator.slice(state, peasantChildren, first, first + 1,
+						allowSharedTiles);
+				while (slice.hasNext()) {
+					children.add(slice.next());
+				}
+				return children;
+			})));
+		}
+
+		List<GameState> children = new ArrayList<GameState>();
+		for (ForkJoinTask<List<GameState>> task : tasks) {
+			children.addAll(task.join());
+		}
+		return children;
+	}
+
+	/**
+	 * Forks the task if the caller already runs in the pool, so it can help
+	 * with it, and hands it to the pool otherwise
+	 */
+	private <T> ForkJoinTask<T> submit(ForkJoinTask<T> task) {
+		if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool) {
+			return task.fork();
+		}
+		return pool.submit(task);
+	}
+}
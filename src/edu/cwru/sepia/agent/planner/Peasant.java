@@ -4,7 +4,8 @@ import edu.cwru.sepia.environment.model.state.ResourceType;
 
 /**
  * Represents peasants on the map. It includes what resource it is holding, how
- * much of a resource it is holding, and facts about where it is on the map
+ * much of a resource it is holding, and where it is on the map. GameState
+ * stores peasants packed into an int[]; these are snapshots of one of them.
  * 
  * @author Anna He
  *
@@ -13,14 +14,11 @@ public class Peasant extends MapObject {
 
 	private ResourceType holdingObject;
 	private int resourceQuantity;
-	private boolean isNextToGoldMine;
-	private boolean isNextToForest;
-	private boolean isNextToTownHall;
 	private int unitID;
 
 	public Peasant(ResourceType object, int quantity, Position pos, int unitID) {
 
-		super(true, "PEASANT", pos);
+		super(true, MapObjectType.PEASANT, pos);
 
 		if (quantity > 0) {
 			super.setIsEmpty(false);
@@ -32,12 +30,10 @@ public class Peasant extends MapObject {
 	}
 
 	public Peasant(Peasant peasant) {
-		super(peasant.resourceQuantity == 0, "PEASANT", new Position(peasant.getPosition().x, peasant.getPosition().y));
+		super(peasant.resourceQuantity == 0, MapObjectType.PEASANT,
+				new Position(peasant.getPosition().x, peasant.getPosition().y));
 		this.holdingObject = peasant.getHoldingObject();
 		this.resourceQuantity = peasant.getResourceQuantity();
-		this.isNextToGoldMine = peasant.isNextToGoldMine();
-		this.isNextToForest = peasant.isNextToForest();
-		this.isNextToTownHall = peasant.isNextToTownHall();
 		this.unitID = peasant.getUnitID();
 	}
 
@@ -57,40 +53,10 @@ public class Peasant extends MapObject {
 		this.resourceQuantity = resourceQuantity;
 	}
 
-	public boolean isNextToGoldMine() {
-		return isNextToGoldMine;
-	}
-
-	public void setNextToGoldMine(boolean isNextToGoldMine) {
-		this.isNextToGoldMine = isNextToGoldMine;
-	}
-
-	public boolean isNextToForest() {
-		return isNextToForest;
-	}
-
-	public void setNextToForest(boolean isNextToForest) {
-		this.isNextToForest = isNextToForest;
-	}
-
-	public boolean isNextToTownHall() {
-		return isNextToTownHall;
-	}
-
-	public void setNextToTownHall(boolean isNextToTownHall) {
-		this.isNextToTownHall = isNextToTownHall;
-	}
-
 	public int getUnitID() {
 		return this.unitID;
 	}
 
-	public void resetNextTo() {
-		isNextToGoldMine = false;
-		isNextToForest = false;
-		isNextToTownHall = false;
-	}
-
 	public String toString() {
 		return this.getPosition().toString();
 	}
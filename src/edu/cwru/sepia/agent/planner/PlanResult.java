@@ -0,0 +1,90 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.Stack;
+
+import edu.cwru.sepia.agent.planner.actions.StripsAction;
+
+/**
+ * What a Planner search came back with: how it ended, the plan, and the
+ * statistics of the search that produced it. A search that ran out of budget
+ * comes back with a plan that only gets part of the way to the goal.
+ *
+ * @author Anna He
+ *
+ */
+public class PlanResult {
+
+	// the first action to do is on top, null if there is no plan
+	private final Stack<StripsAction> plan;
+	// the state the plan ends in, null if there is no plan
+	private final GameState endState;
+	private final SearchStatistics statistics;
+	private final PlanStatus status;
+
+	/**
+	 * A finished search, FOUND if there is a plan and NO_PLAN otherwise
+	 */
+	public PlanResult(Stack<StripsAction> plan, GameState goalState, SearchStatistics statistics) {
+		this(plan, goalState, statistics, plan != null ? PlanStatus.FOUND : PlanStatus.NO_PLAN);
+	}
+
+	public PlanResult(Stack<StripsAction> plan, GameState endState, SearchStatistics statistics,
+			PlanStatus status) {
+		this.plan = plan;
+		this.endState = endState;
+		this.statistics = statistics;
+		this.status = status;
+	}
+
+	/**
+	 * @return true if the plan reaches the goal
+	 */
+	public boolean isFound() {
+		return status == PlanStatus.FOUND;
+	}
+
+	public PlanStatus getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return the plan with the first action on top, a partial one if the
+	 *         budget ran out, null if there is none. Pop from a copy if the
+	 *         result is used again.
+	 */
+	public Stack<StripsAction> getPlan() {
+		return plan;
+	}
+
+	/**
+	 * @return the state the plan ends in, null if none was found
+	 */
+	public GameState getGoalState() {
+		return isFound() ? endState : null;
+	}
+
+	/**
+	 * @return the state the plan ends in, partial or not, null if there is
+	 *         no plan
+	 */
+	public GameState getEndState() {
+		return endState;
+	}
+
+	/**
+	 * @return how long the plan takes, -1 if there is no plan
+	 */
+	public int getCost() {
+		return endState == null ? -1 : endState.getMyCost();
+	}
+
+	public SearchStatistics getStatistics() {
+		return statistics;
+	}
+
+	public String toString() {
+		String kind = isFound() ? "[PLAN" : status == PlanStatus.NO_PLAN ? "[NO PLAN" : "[PARTIAL PLAN, " + status;
+		String actions = plan == null ? "" : ": actions=" + plan.size() + ", cost=" + getCost();
+		return kind + actions + "] " + statistics;
+	}
+}
@@ -0,0 +1,18 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * How a search ended, see PlanResult.getStatus
+ *
+ * @author Anna He
+ *
+ */
+public enum PlanStatus {
+	// the plan reaches the goal
+	FOUND,
+	// the search ran out of states, there is no plan reaching the goal
+	NO_PLAN,
+	// maxNodes states were expanded first, the plan only gets part of the way
+	NODE_LIMIT,
+	// timeLimit ran out first, the plan only gets part of the way
+	TIME_LIMIT
+}
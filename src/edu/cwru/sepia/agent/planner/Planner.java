@@ -0,0 +1,446 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import edu.cwru.sepia.agent.planner.actions.StripsAction;
+import edu.cwru.sepia.environment.model.persistence.generated.XmlState;
+import edu.cwru.sepia.environment.model.state.State;
+import edu.cwru.sepia.environment.model.state.XmlStateCreator;
+
+/**
+ * The planner without SEPIA's runtime around it. It plans from a GameState or
+ * straight from a map file and hands back a PlanResult. It never prints and
+ * never exits, so it can be called any number of times from one JVM.
+ * PlannerAgent uses it to plan inside an episode. Which search it runs is
+ * picked with a SearchMode, A* by default.
+ *
+ * A Planner only holds its settings; every search keeps its lists to itself,
+ * so one Planner can run searches one after the other or at the same time.
+ *
+ * @author Anna He
+ *
+ */
+public class Planner {
+
+	// stop as soon as a goal is generated instead of when it is expanded. That
+	// is faster but the plan may not be the cheapest
+	private boolean goalOnGeneration = false;
+	// keep at most this many children of each expanded state, 0 keeps them
+	// all. Bounds the work per expansion, but can miss the best plan
+	private int maxChildren = 0;
+	private SearchMode mode = SearchMode.ASTAR;
+	// workers of the parallel searches
+	private int searchThreads = Runtime.getRuntime().availableProcessors();
+	// build the children of each expanded state on the common ForkJoinPool,
+	// see ParallelExpansion. Only used by A* without maxChildren
+	private boolean parallelExpansion = false;
+	private int parallelThreshold = 64;
+	// states the transposition table of IDA* and SMA* remembers, 0 for none
+	private int transpositionTableSize = 1 << 20;
+	// most states SMA* keeps on its open list
+	private int maxOpenStates = 100000;
+	// heuristic weight of the first anytime round, and how much it goes down
+	// each round after
+	private double weight = 3;
+	private double weightStep = 0.5;
+	// budget of every search, 0 for no limit. A search that runs out hands
+	// back a partial plan, see SearchBudget
+	private long maxNodes = 0;
+	// milliseconds
+	private long timeLimit = 0;
+	// plan with TripActions of up to this many round trips instead of single
+	// moves and harvests, 0 for single actions only
+	private int macroTrips = 0;
+
+	/**
+	 * Plans on a SEPIA map file with the default settings
+	 *
+	 * @param mapFile
+	 *            a map saved by SEPIA, like Data/rc_3m5t.xml
+	 * @param requiredGold
+	 * @param requiredWood
+	 * @param buildPeasants
+	 *            true if the plan may build peasants
+	 * @return the plan and the statistics of the search
+	 * @throws IOException
+	 *             if the map can't be read
+	 */
+	public static PlanResult plan(String mapFile, int requiredGold, int requiredWood, boolean buildPeasants)
+			throws IOException {
+		return new Planner().plan(loadMap(mapFile), requiredGold, requiredWood, buildPeasants);
+	}
+
+	/**
+	 * Reads a map file into the state SEPIA would start an episode in
+	 *
+	 * @param mapFile
+	 * @return the view of player 0
+	 * @throws IOException
+	 *             if the file can't be read or isn't a map
+	 */
+	public static State.StateView loadMap(String mapFile) throws IOException {
+		try {
+			XmlState xml = (XmlState) JAXBContext.newInstance(XmlState.class).createUnmarshaller()
+					.unmarshal(new File(mapFile));
+			return new XmlStateCreator(xml).createState().getView(0);
+		} catch (JAXBException | ClassCastException e) {
+			throw new IOException("Could not read the map " + mapFile, e);
+		}
+	}
+
+	/**
+	 * Plans for player 0 on the given state
+	 *
+	 * @param state
+	 * @param requiredGold
+	 * @param requiredWood
+	 * @param buildPeasants
+	 * @return the plan and the statistics of the search
+	 */
+	public PlanResult plan(State.StateView state, int requiredGold, int requiredWood, boolean buildPeasants) {
+		return search(new GameState(state, 0, requiredGold, requiredWood, buildPeasants));
+	}
+
+	/**
+	 * Searches with the chosen SearchMode
+	 *
+	 * @param startState
+	 *            The state which is being planned from
+	 * @return the plan, with statistics. The plan is null if there is none.
+	 */
+	public PlanResult search(GameState startState) {
+		return search(startState, null);
+	}
+
+	/**
+	 * Searches with the chosen SearchMode, reporting plans as they are found.
+	 * The anytime search reports every plan cheaper than the last, the others
+	 * only the plan they return. If maxNodes or timeLimit runs out first, the
+	 * result is the best partial plan with the status of the budget.
+	 *
+	 * @param startState
+	 *            The state which is being planned from
+	 * @param listener
+	 *            called on the searching thread with every plan found, may be
+	 *            null
+	 * @return the cheapest plan found, with statistics. The plan is null if
+	 *         there is none.
+	 */
+	public PlanResult search(GameState startState, Consumer<PlanResult> listener) {
+		SearchBudget budget = new SearchBudget(maxNodes, timeLimit);
+
+		if (startState.getMacroTrips() != macroTrips) {
+			startState = startState.withMacroTrips(macroTrips);
+		}
+
+		if (mode == SearchMode.ANYTIME) {
+			return new AnytimeSearch(maxChildren, weight, weightStep).search(startState, budget, listener);
+		}
+
+		PlanResult result = searchOnce(startState, budget);
+		if (listener != null && result.isFound()) {
+			listener.accept(result);
+		}
+		return result;
+	}
+
+	private PlanResult searchOnce(GameState startState, SearchBudget budget) {
+		switch (mode) {
+		case HDA:
+			return new HashDistributedSearch(searchThreads, maxChildren, goalOnGeneration).search(startState,
+					budget);
+		case IDA:
+			return new IterativeDeepeningSearch(maxChildren, transpositionTableSize).search(startState, budget);
+		case SMA:
+			return new MemoryBoundedSearch(maxChildren, maxOpenStates, transpositionTableSize).search(startState,
+					budget);
+		default:
+			return astar(startState, budget);
+		}
+	}
+
+	/**
+	 * Perform an A* search of the game graph.
+	 *
+	 * @param startState
+	 *            The state which is being planned from
+	 * @param budget
+	 * @return the plan, with statistics. The plan is null if there is none.
+	 */
+	private PlanResult astar(GameState startState, SearchBudget budget) {
+
+		OpenList openList = new OpenList();
+		// states already expanded, checked before expanding a transposition
+		Set<GameState> closedList = new HashSet<GameState>();
+		// every state currently on the open list, so a cheaper way to the
+		// same world can update it in place
+		Map<GameState, GameState> openStates = new HashMap<GameState, GameState>();
+		SearchStatistics statistics = new SearchStatistics();
+		ParallelExpansion expansion = parallelExpansion && maxChildren == 0
+				? new ParallelExpansion(ForkJoinPool.commonPool(), parallelThreshold) : null;
+
+		statistics.start();
+		openList.add(startState);
+		openStates.put(startState, startState);
+
+		while (!openList.isEmpty()) {
+			GameState curState = openList.poll();
+			openStates.remove(curState);
+			closedList.add(curState);
+			statistics.expanded();
+
+			if (curState.isGoal()) {
+				statistics.stop();
+				return new PlanResult(getPath(curState), curState, statistics);
+			}
+
+			PlanStatus outOfBudget = budget.spend(curState);
+			if (outOfBudget != null) {
+				statistics.stop();
+				return budget.partial(outOfBudget, statistics);
+			}
+
+			// children are built one at a time, so stopping early saves
+			// building the rest. In parallel they are all built at once
+			Iterator<GameState> children = expansion == null ? curState.successors(maxChildren)
+					: expansion.successors(curState).iterator();
+
+			while (children.hasNext()) {
+				GameState child = children.next();
+				statistics.generated(1);
+
+				if (goalOnGeneration && child.isGoal()) {
+					statistics.stop();
+					return new PlanResult(getPath(child), child, statistics);
+				}
+
+				if (closedList.contains(child)) {
+					continue;
+				}
+
+				GameState existing = openStates.get(child);
+
+				if (existing == null) {
+					openList.add(child);
+					openStates.put(child, child);
+				} else if (child.compareTo(existing) < 0) {
+					// same world reached more cheaply. The peasants may be
+					// numbered differently in the two (see GameState.equals),
+					// and the plan only works with the numbering that comes
+					// with its actions, so the new state replaces the old one.
+					// The map keeps its old key on put, so that goes first
+					openList.decreaseKey(existing, child);
+					openStates.remove(existing);
+					openStates.put(child, child);
+					statistics.decreasedKey();
+				}
+			}
+			statistics.openListSize(openList.size());
+		}
+
+		statistics.stop();
+		return new PlanResult(null, null, statistics);
+	}
+
+	/**
+	 * Based on the last child, we can back track based on the parent action
+	 *
+	 * @param child
+	 * @return the actions leading to child, the first one on top
+	 */
+	static Stack<StripsAction> getPath(GameState child) {
+
+		Stack<StripsAction> actions = new Stack<StripsAction>();
+
+		while (child != null) {
+			if (child.getParentAction() != null) {
+				for (StripsAction action : child.getParentAction()) {
+					actions.add(action);
+				}
+			}
+			child = child.getParentState();
+		}
+
+		while (!actions.isEmpty() && actions.peek() == null) {
+			actions.pop();
+		}
+
+		return actions;
+	}
+
+	/**
+	 * Changes a setting by name, for settings given as key=value text:
+	 * goalOnGeneration=true|false, maxChildren=n,
+	 * search=astar|hda|ida|sma|anytime, searchThreads=n,
+	 * parallelExpansion=true|false, parallelThreshold=n,
+	 * transpositionTableSize=n, maxOpenStates=n, weight=x, weightStep=x,
+	 * maxNodes=n, timeLimit=milliseconds and macroTrips=n
+	 *
+	 * @param key
+	 * @param value
+	 * @return false if there is no setting with that name
+	 * @throws IllegalArgumentException
+	 *             if the value doesn't fit the setting
+	 */
+	public boolean setOption(String key, String value) {
+		switch (key) {
+		case "goalOnGeneration":
+			setGoalOnGeneration(Boolean.parseBoolean(value));
+			return true;
+		case "maxChildren":
+			setMaxChildren(Integer.parseInt(value));
+			return true;
+		case "search":
+			setMode(SearchMode.valueOf(value.toUpperCase()));
+			return true;
+		case "searchThreads":
+			setSearchThreads(Integer.parseInt(value));
+			return true;
+		case "parallelExpansion":
+			setParallelExpansion(Boolean.parseBoolean(value));
+			return true;
+		case "parallelThreshold":
+			setParallelThreshold(Integer.parseInt(value));
+			return true;
+		case "transpositionTableSize":
+			setTranspositionTableSize(Integer.parseInt(value));
+			return true;
+		case "maxOpenStates":
+			setMaxOpenStates(Integer.parseInt(value));
+			return true;
+		case "weight":
+			setWeight(Double.parseDouble(value));
+			return true;
+		case "weightStep":
+			setWeightStep(Double.parseDouble(value));
+			return true;
+		case "maxNodes":
+			setMaxNodes(Long.parseLong(value));
+			return true;
+		case "timeLimit":
+			setTimeLimit(Long.parseLong(value));
+			return true;
+		case "macroTrips":
+			setMacroTrips(Integer.parseInt(value));
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	public boolean isGoalOnGeneration() {
+		return goalOnGeneration;
+	}
+
+	public void setGoalOnGeneration(boolean goalOnGeneration) {
+		this.goalOnGeneration = goalOnGeneration;
+	}
+
+	public int getMaxChildren() {
+		return maxChildren;
+	}
+
+	public void setMaxChildren(int maxChildren) {
+		this.maxChildren = maxChildren;
+	}
+
+	public SearchMode getMode() {
+		return mode;
+	}
+
+	public void setMode(SearchMode mode) {
+		this.mode = mode;
+	}
+
+	public int getSearchThreads() {
+		return searchThreads;
+	}
+
+	public void setSearchThreads(int searchThreads) {
+		this.searchThreads = searchThreads;
+	}
+
+	public boolean isParallelExpansion() {
+		return parallelExpansion;
+	}
+
+	public void setParallelExpansion(boolean parallelExpansion) {
+		this.parallelExpansion = parallelExpansion;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	public int getTranspositionTableSize() {
+		return transpositionTableSize;
+	}
+
+	public void setTranspositionTableSize(int transpositionTableSize) {
+		this.transpositionTableSize = transpositionTableSize;
+	}
+
+	public int getMaxOpenStates() {
+		return maxOpenStates;
+	}
+
+	public void setMaxOpenStates(int maxOpenStates) {
+		this.maxOpenStates = maxOpenStates;
+	}
+
+	public double getWeight() {
+		return weight;
+	}
+
+	public void setWeight(double weight) {
+		this.weight = weight;
+	}
+
+	public double getWeightStep() {
+		return weightStep;
+	}
+
+	public void setWeightStep(double weightStep) {
+		this.weightStep = weightStep;
+	}
+
+	public long getMaxNodes() {
+		return maxNodes;
+	}
+
+	public void setMaxNodes(long maxNodes) {
+		this.maxNodes = maxNodes;
+	}
+
+	public long getTimeLimit() {
+		return timeLimit;
+	}
+
+	public void setTimeLimit(long timeLimit) {
+		this.timeLimit = timeLimit;
+	}
+
+	public int getMacroTrips() {
+		return macroTrips;
+	}
+
+	public void setMacroTrips(int macroTrips) {
+		this.macroTrips = macroTrips;
+	}
+}
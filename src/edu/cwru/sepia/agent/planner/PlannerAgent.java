@@ -6,11 +6,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import edu.cwru.sepia.action.Action;
 import edu.cwru.sepia.agent.Agent;
@@ -24,10 +23,20 @@ public class PlannerAgent extends Agent {
 	final int requiredGold;
 	final boolean buildPeasants;
 
+	// Does the searching. Optional settings for it are given as key=value
+	// arguments after the required ones, see Planner.setOption
+	final Planner planner = new Planner();
+
 	// Your PEAgent implementation. This prevents you from having to parse the
 	// text file representation of your plan.
 	PEAgent peAgent;
 
+	// With search=anytime the search goes on in the background while the
+	// first plan is executed. The latest cheaper plan waits here until the
+	// next step, where the PEAgent switches to it if it can
+	private final AtomicReference<PlanResult> improvedPlan = new AtomicReference<PlanResult>();
+	private int planCost;
+
 	public PlannerAgent(int playernum, String[] params) {
 		super(playernum);
 
@@ -40,20 +49,47 @@ public class PlannerAgent extends Agent {
 		requiredGold = Integer.parseInt(params[1]);
 		buildPeasants = Boolean.parseBoolean(params[2]);
 
+		for (int i = 3; i < params.length; i++) {
+			parseOption(params[i]);
+		}
+
 		System.out.println("required wood: " + requiredWood + " required gold: " + requiredGold + " build Peasants: "
 				+ buildPeasants);
 	}
 
+	/**
+	 * Reads one of the optional key=value arguments
+	 *
+	 * @param option
+	 */
+	private void parseOption(String option) {
+		String[] keyValue = option.split("=", 2);
+
+		if (keyValue.length != 2) {
+			System.err.println("Ignoring argument " + option + ", expected key=value");
+			return;
+		}
+
+		try {
+			if (!planner.setOption(keyValue[0].trim(), keyValue[1].trim())) {
+				System.err.println("Ignoring unknown option " + keyValue[0]);
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println("Ignoring option " + option + ", bad value");
+		}
+	}
+
 	@Override
 	public Map<Integer, Action> initialStep(State.StateView stateView, History.HistoryView historyView) {
 
-		Stack<StripsAction> plan = AstarSearch(
-				new GameState(stateView, playernum, requiredGold, requiredWood, buildPeasants));
+		GameState startState = new GameState(stateView, playernum, requiredGold, requiredWood, buildPeasants);
+		Stack<StripsAction> plan = planner.getMode() == SearchMode.ANYTIME ? anytimeSearch(startState)
+				: AstarSearch(startState);
 
 		if (plan == null) {
+			// nothing to execute, the episode goes on until SEPIA ends it
 			System.err.println("No plan was found");
-			System.exit(1);
-			return null;
+			plan = new Stack<StripsAction>();
 		}
 
 		// write the plan to a text file
@@ -72,6 +108,17 @@ public class PlannerAgent extends Agent {
 			return null;
 		}
 
+		PlanResult improved = improvedPlan.getAndSet(null);
+		if (improved != null && improved.getCost() < planCost) {
+			if (peAgent.replacePlan(improved.getPlan())) {
+				System.out.println("Switched to a cheaper plan " + improved);
+				planCost = improved.getCost();
+				savePlan(improved.getPlan());
+			} else {
+				System.out.println("Kept the current plan, execution has gone past the cheaper one " + improved);
+			}
+		}
+
 		return peAgent.middleStep(stateView, historyView);
 	}
 
@@ -96,86 +143,69 @@ public class PlannerAgent extends Agent {
 	 * The implementations should be very similar. The difference being that
 	 * your nodes are now GameState objects not MapLocation objects.
 	 *
+	 * The search itself is done by the Planner, this reports how it went.
+	 *
 	 * @param startState
 	 *            The state which is being planned from
 	 * @return The plan or null if no plan is found.
 	 */
 	private Stack<StripsAction> AstarSearch(GameState startState) {
 
-		ArrayList<GameState> openList = new ArrayList<GameState>();
-
-		openList.add(startState);
-
-		while (!openList.isEmpty()) {
-			Collections.sort(openList, Collections.reverseOrder());
+		PlanResult result = planner.search(startState);
 
-			GameState curState = openList.get(0);
-			openList.remove(0);
-
-			if (curState.getParentAction() != null) {
-				System.out.println(curState.getParentAction().toString());
-			}
-
-			List<GameState> children = curState.generateChildren();
-
-			openList = new ArrayList<GameState>();
-			for (GameState child : children) {
-				if (curState.isGoal()) {
-					System.out.println("PATH FOUND \n");
-					return getPath(curState);
-				}
-
-				if (canAddToOpenList(child, openList)) {
-					openList.add(child);
-				}
-			}
-		}
-		System.exit(0);
-		return null;
-	}
-
-	/**
-	 * Checks to see whether the utility of a node is good enough
-	 * 
-	 * @param neighbor
-	 * @param openList
-	 * @return
-	 */
-	private boolean canAddToOpenList(GameState neighbor, ArrayList<GameState> openList) {
-
-		for (GameState node : openList) {
-			if (neighbor.heuristic() < node.heuristic()) {
-				return false;
-			}
+		if (result.isFound()) {
+			System.out.println("PATH FOUND \n");
+		} else if (result.getPlan() != null) {
+			System.out.println("Out of budget (" + result.getStatus() + "), executing the best partial plan");
 		}
+		System.out.println(result.getStatistics());
 
-		return true;
+		return result.getPlan();
 	}
 
 	/**
-	 * Based on the last child, we can back track based on the parent action
-	 * 
-	 * @param child
-	 * @return
+	 * Starts the anytime search on its own thread and waits for its first
+	 * plan, or for a partial one if the budget runs out before that. Cheaper
+	 * plans found after the first are left in improvedPlan.
+	 *
+	 * @param startState
+	 *            The state which is being planned from
+	 * @return The first plan or null if no plan is found.
 	 */
-	private Stack<StripsAction> getPath(GameState child) {
-
-		Stack<StripsAction> actions = new Stack<StripsAction>();
-
-		while (child != null) {
-			if (child.getParentAction() != null) {
-				for (StripsAction action : child.getParentAction()) {
-					actions.add(action);
-				}
+	private Stack<StripsAction> anytimeSearch(GameState startState) {
+		CountDownLatch firstPlan = new CountDownLatch(1);
+
+		Thread search = new Thread(() -> {
+			PlanResult result = planner.search(startState, improved -> {
+				improvedPlan.set(improved);
+				firstPlan.countDown();
+			});
+			System.out.println("Anytime search finished " + result);
+			if (!result.isFound()) {
+				improvedPlan.set(result);
 			}
-			child = child.getParentState();
+			firstPlan.countDown();
+		}, "anytime-search");
+		search.setDaemon(true);
+		search.start();
+
+		try {
+			firstPlan.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
 		}
 
-		while (actions.peek() == null) {
-			actions.pop();
+		PlanResult result = improvedPlan.getAndSet(null);
+		if (result == null || result.getPlan() == null) {
+			return null;
 		}
 
-		return actions;
+		System.out.println(result.isFound() ? "PATH FOUND \n"
+				: "Out of budget (" + result.getStatus() + "), executing the best partial plan");
+		System.out.println(result);
+		planCost = result.getCost();
+		return result.getPlan();
 	}
 
 	/**
@@ -0,0 +1,326 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import edu.cwru.sepia.environment.model.state.ResourceNode;
+import edu.cwru.sepia.environment.model.state.State;
+import edu.cwru.sepia.environment.model.state.Unit;
+
+/**
+ * The parts of the map that never change while planning. It is built once
+ * from the StateView when the initial GameState is constructed and then shared
+ * by every state in the search, so the states themselves only need to store
+ * what actually changes (see GameState).
+ *
+ * Every forest and goldmine gets a resource id, which is its index in this
+ * map. GameState keeps the amount left at each resource in a ResourceTable
+ * indexed by that id. The Forest and GoldMine objects held here are
+ * descriptors: their quantity is the amount at the start of planning and must
+ * not be changed.
+ *
+ * It also answers the grid questions the actions used to ask the StateView
+ * (map size, what is blocked, which resource is on a tile, where a new peasant
+ * would appear), so nothing below the initial GameState needs SEPIA.
+ *
+ * @author Anna He
+ *
+ */
+public class PlanningMap {
+
+	private final MapObject[] resources;
+	private final List<Forest> forests;
+	private final List<GoldMine> goldMines;
+	private final TownHall townHall;
+	private final int supplyCap;
+
+	private final int totalWoodOnMap;
+	private final int totalGoldOnMap;
+
+	private final int xExtent;
+	private final int yExtent;
+	// tiles a peasant can't stand on (resources and the townhall), indexed by
+	// tileIndex
+	private final BitSet blocked;
+	// resource id of the resource on each tile, -1 if there is none
+	private final int[] resourceAt;
+	// free tiles around the townhall in Direction order, where a new peasant
+	// is placed
+	private final List<Position> townHallFreeCells;
+	private final ApproachTable approachTable;
+
+	// steps between the free tiles around a resource and the free tiles
+	// around the townhall, so the length of each leg of a trip to it
+	private final int[] tripDistance;
+	// forest and goldmine ids the townhall can be reached from, nearest first
+	private final int[] forestsByDistance;
+	private final int[] goldMinesByDistance;
+
+	/**
+	 * Reads the resources and the townhall out of the state
+	 *
+	 * @param state
+	 * @param playernum
+	 */
+	public PlanningMap(State.StateView state, int playernum) {
+
+		List<MapObject> allResources = new ArrayList<MapObject>();
+		List<Forest> allForests = new ArrayList<Forest>();
+		List<GoldMine> allGoldMines = new ArrayList<GoldMine>();
+		int wood = 0;
+		int gold = 0;
+
+		for (ResourceNode.ResourceView resource : state.getAllResourceNodes()) {
+			Position position = new Position(resource.getXPosition(), resource.getYPosition());
+
+			if (resource.getType() == ResourceNode.Type.TREE) {
+				Forest forest = new Forest(false, resource.getAmountRemaining(), position, allResources.size());
+				allResources.add(forest);
+				allForests.add(forest);
+				wood += resource.getAmountRemaining();
+
+			} else if (resource.getType() == ResourceNode.Type.GOLD_MINE) {
+				GoldMine goldmine = new GoldMine(false, resource.getAmountRemaining(), position, allResources.size());
+				allResources.add(goldmine);
+				allGoldMines.add(goldmine);
+				gold += resource.getAmountRemaining();
+			}
+		}
+
+		TownHall hall = null;
+		for (Unit.UnitView unit : state.getAllUnits()) {
+			if (unit.getTemplateView().getName().toLowerCase().equals("townhall")) {
+				hall = new TownHall(true, unit, new Position(unit.getXPosition(), unit.getYPosition()));
+			}
+		}
+
+		this.resources = allResources.toArray(new MapObject[allResources.size()]);
+		this.forests = Collections.unmodifiableList(allForests);
+		this.goldMines = Collections.unmodifiableList(allGoldMines);
+		this.townHall = hall;
+		this.supplyCap = state.getSupplyCap(playernum);
+		this.totalWoodOnMap = wood;
+		this.totalGoldOnMap = gold;
+
+		this.xExtent = state.getXExtent();
+		this.yExtent = state.getYExtent();
+		this.blocked = new BitSet(xExtent * yExtent);
+		this.resourceAt = new int[xExtent * yExtent];
+		Arrays.fill(resourceAt, -1);
+
+		for (int i = 0; i < resources.length; i++) {
+			Position position = resources[i].getPosition();
+			if (isInBounds(position.x, position.y)) {
+				resourceAt[tileIndex(position.x, position.y)] = i;
+				blocked.set(tileIndex(position.x, position.y));
+			}
+		}
+
+		List<Position> freeCells = new ArrayList<Position>();
+		if (townHall != null) {
+			Position hallPosition = townHall.getPosition();
+			if (isInBounds(hallPosition.x, hallPosition.y)) {
+				blocked.set(tileIndex(hallPosition.x, hallPosition.y));
+			}
+
+			for (Position pos : hallPosition.getAdjacentPositions()) {
+				if (!isBlocked(pos.x, pos.y)) {
+					freeCells.add(pos);
+				}
+			}
+		}
+		this.townHallFreeCells = Collections.unmodifiableList(freeCells);
+		this.approachTable = new ApproachTable(this);
+
+		this.tripDistance = new int[resources.length];
+		List<Integer> reachableForests = new ArrayList<Integer>();
+		List<Integer> reachableGoldMines = new ArrayList<Integer>();
+
+		for (int i = 0; i < resources.length; i++) {
+			tripDistance[i] = Integer.MAX_VALUE;
+
+			for (Position pos : resources[i].getPosition().getAdjacentPositions()) {
+				if (!isBlocked(pos.x, pos.y) && approachTable.getApproachTile(pos.x, pos.y,
+						approachTable.getTownHallTarget()) != null) {
+					tripDistance[i] = Math.min(tripDistance[i],
+							approachTable.getTravelCost(pos.x, pos.y, approachTable.getTownHallTarget()));
+				}
+			}
+
+			if (tripDistance[i] != Integer.MAX_VALUE) {
+				(isForest(i) ? reachableForests : reachableGoldMines).add(i);
+			}
+		}
+
+		this.forestsByDistance = sortByTripDistance(reachableForests);
+		this.goldMinesByDistance = sortByTripDistance(reachableGoldMines);
+	}
+
+	private int[] sortByTripDistance(List<Integer> resourceIDs) {
+		Collections.sort(resourceIDs, (a, b) -> Integer.compare(tripDistance[a], tripDistance[b]));
+
+		int[] result = new int[resourceIDs.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = resourceIDs.get(i);
+		}
+		return result;
+	}
+
+	private int tileIndex(int x, int y) {
+		return y * xExtent + x;
+	}
+
+	public int getXExtent() {
+		return xExtent;
+	}
+
+	public int getYExtent() {
+		return yExtent;
+	}
+
+	public boolean isInBounds(int x, int y) {
+		return x >= 0 && y >= 0 && x < xExtent && y < yExtent;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return true if the tile is off the map or holds a resource or the
+	 *         townhall
+	 */
+	public boolean isBlocked(int x, int y) {
+		return !isInBounds(x, y) || blocked.get(tileIndex(x, y));
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return the id of the forest or goldmine on the tile, -1 if there is none
+	 */
+	public int getResourceIDAt(int x, int y) {
+		return isInBounds(x, y) ? resourceAt[tileIndex(x, y)] : -1;
+	}
+
+	/**
+	 * @return the free tiles next to the townhall, in the order a new peasant
+	 *         would be placed on them
+	 */
+	public List<Position> getTownHallFreeCells() {
+		return townHallFreeCells;
+	}
+
+	public int getResourceCount() {
+		return resources.length;
+	}
+
+	/**
+	 * @param resourceID
+	 * @return the Forest or GoldMine with this id
+	 */
+	public MapObject getResource(int resourceID) {
+		return resources[resourceID];
+	}
+
+	/**
+	 * @param resource
+	 * @return the resource id of a Forest or GoldMine, -1 for anything else
+	 */
+	public static int getResourceID(MapObject resource) {
+		if (resource instanceof Forest) {
+			return ((Forest) resource).getResourceID();
+		} else if (resource instanceof GoldMine) {
+			return ((GoldMine) resource).getResourceID();
+		}
+		return -1;
+	}
+
+	/**
+	 * @param target
+	 *            a Forest, GoldMine or the TownHall
+	 * @return the index of the object in the ApproachTable, -1 if it isn't a
+	 *         move target
+	 */
+	public int getTargetIndex(MapObject target) {
+		if (target instanceof TownHall) {
+			return approachTable.getTownHallTarget();
+		}
+		return getResourceID(target);
+	}
+
+	public ApproachTable getApproachTable() {
+		return approachTable;
+	}
+
+	/**
+	 * @param resourceID
+	 * @return the fewest steps between the resource and the townhall
+	 */
+	public int getTripDistance(int resourceID) {
+		return tripDistance[resourceID];
+	}
+
+	/**
+	 * @return ids of the forests a peasant can carry wood home from, nearest
+	 *         to the townhall first. Must not be changed.
+	 */
+	int[] getForestsByDistance() {
+		return forestsByDistance;
+	}
+
+	/**
+	 * @return ids of the goldmines a peasant can carry gold home from, nearest
+	 *         to the townhall first. Must not be changed.
+	 */
+	int[] getGoldMinesByDistance() {
+		return goldMinesByDistance;
+	}
+
+	public boolean isForest(int resourceID) {
+		return resources[resourceID] instanceof Forest;
+	}
+
+	/**
+	 * @return the amount at every resource at the start of planning, indexed
+	 *         by resource id. A fresh copy the caller may change.
+	 */
+	public int[] getInitialAmounts() {
+		int[] amounts = new int[resources.length];
+
+		for (Forest forest : forests) {
+			amounts[forest.getResourceID()] = forest.getResourceQuantity();
+		}
+
+		for (GoldMine goldmine : goldMines) {
+			amounts[goldmine.getResourceID()] = goldmine.getResourceQuantity();
+		}
+
+		return amounts;
+	}
+
+	public List<Forest> getForests() {
+		return forests;
+	}
+
+	public List<GoldMine> getGoldMines() {
+		return goldMines;
+	}
+
+	public TownHall getTownHall() {
+		return townHall;
+	}
+
+	public int getSupplyCap() {
+		return supplyCap;
+	}
+
+	public int getTotalWoodOnMap() {
+		return totalWoodOnMap;
+	}
+
+	public int getTotalGoldOnMap() {
+		return totalGoldOnMap;
+	}
+}
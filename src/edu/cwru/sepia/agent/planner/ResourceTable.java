@@ -0,0 +1,179 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.Arrays;
+
+/**
+ * The amount left at every forest and goldmine, indexed by resource id. It is
+ * a persistent array: set() never changes the table, it returns a new one
+ * that shares everything but the touched entry with the old one.
+ *
+ * Internally it is a 32-way trie. The leaves are int[32] chunks of amounts and
+ * the inner nodes are Object[32] arrays of children. A set() copies only the
+ * path from the root to the leaf holding the entry, which is one int[32] for
+ * up to 32 resources and one Object[32] more for every factor of 32 after
+ * that. A harvest on a map with hundreds of trees therefore allocates the same
+ * couple of small arrays as one on a map with five.
+ *
+ * @author Anna He
+ *
+ */
+public final class ResourceTable {
+
+	private static final int BITS = 5;
+	private static final int WIDTH = 1 << BITS;
+	private static final int MASK = WIDTH - 1;
+
+	private final int size;
+	// how far to shift an id to find its slot in the root, 0 if the root is a
+	// leaf
+	private final int shift;
+	// int[] if shift is 0, otherwise Object[]
+	private final Object root;
+
+	private ResourceTable(int size, int shift, Object root) {
+		this.size = size;
+		this.shift = shift;
+		this.root = root;
+	}
+
+	/**
+	 * Builds a table holding a copy of the given amounts
+	 *
+	 * @param amounts
+	 *            indexed by resource id
+	 * @return
+	 */
+	public static ResourceTable of(int[] amounts) {
+		int shift = 0;
+		while ((long) WIDTH << shift < amounts.length) {
+			shift += BITS;
+		}
+
+		return new ResourceTable(amounts.length, shift, build(amounts, 0, shift));
+	}
+
+	private static Object build(int[] amounts, int offset, int shift) {
+		if (shift == 0) {
+			int[] leaf = new int[WIDTH];
+			System.arraycopy(amounts, offset, leaf, 0, Math.max(0, Math.min(WIDTH, amounts.length - offset)));
+			return leaf;
+		}
+
+		Object[] node = new Object[WIDTH];
+		int span = 1 << shift;
+		for (int i = 0; i < WIDTH && offset + i * span < amounts.length; i++) {
+			node[i] = build(amounts, offset + i * span, shift - BITS);
+		}
+		return node;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int get(int resourceID) {
+		if (resourceID < 0 || resourceID >= size) {
+			throw new IndexOutOfBoundsException("No resource with id " + resourceID);
+		}
+
+		Object node = root;
+		for (int level = shift; level > 0; level -= BITS) {
+			node = ((Object[]) node)[(resourceID >>> level) & MASK];
+		}
+		return ((int[]) node)[resourceID & MASK];
+	}
+
+	/**
+	 * @param resourceID
+	 * @param amount
+	 * @return a table equal to this one except that resourceID holds amount.
+	 *         This table is left unchanged.
+	 */
+	public ResourceTable set(int resourceID, int amount) {
+		if (resourceID < 0 || resourceID >= size) {
+			throw new IndexOutOfBoundsException("No resource with id " + resourceID);
+		}
+
+		if (get(resourceID) == amount) {
+			return this;
+		}
+
+		return new ResourceTable(size, shift, set(root, shift, resourceID, amount));
+	}
+
+	private static Object set(Object node, int level, int resourceID, int amount) {
+		if (level == 0) {
+			int[] leaf = ((int[]) node).clone();
+			leaf[resourceID & MASK] = amount;
+			return leaf;
+		}
+
+		Object[] copy = ((Object[]) node).clone();
+		int slot = (resourceID >>> level) & MASK;
+		copy[slot] = set(copy[slot], level - BITS, resourceID, amount);
+		return copy;
+	}
+
+	/**
+	 * @return the amounts as a plain array, indexed by resource id
+	 */
+	public int[] toArray() {
+		int[] amounts = new int[size];
+		for (int i = 0; i < size; i++) {
+			amounts[i] = get(i);
+		}
+		return amounts;
+	}
+
+	/**
+	 * Two tables are equal if they hold the same amounts. Tables that came from
+	 * the same ancestor share most of their nodes, and shared nodes are not
+	 * looked into, so comparing related states only visits the changed paths.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+
+		ResourceTable other = (ResourceTable) o;
+		return size == other.size && shift == other.shift && nodesEqual(root, other.root, shift);
+	}
+
+	private static boolean nodesEqual(Object a, Object b, int level) {
+		if (a == b) {
+			return true;
+		}
+
+		if (a == null || b == null) {
+			return false;
+		}
+
+		if (level == 0) {
+			return Arrays.equals((int[]) a, (int[]) b);
+		}
+
+		Object[] nodeA = (Object[]) a;
+		Object[] nodeB = (Object[]) b;
+		for (int i = 0; i < WIDTH; i++) {
+			if (!nodesEqual(nodeA[i], nodeB[i], level - BITS)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(toArray());
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+}
@@ -0,0 +1,157 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * A map and the goal to plan for on it.
+ *
+ * Scenarios are written as file[:wood:gold:buildPeasants]. The file is either
+ * a SEPIA map or a SEPIA configuration that runs the PlannerAgent, like
+ * Data/midasLarge.xml. A configuration brings its map and the goal from the
+ * agent's arguments, so the goal may be left out for it; if it is given it
+ * replaces the configured one. A map always needs the goal.
+ *
+ * @author Anna He
+ *
+ */
+public class Scenario {
+
+	private final String name;
+	private final String mapFile;
+	private final int requiredWood;
+	private final int requiredGold;
+	private final boolean buildPeasants;
+
+	public Scenario(String name, String mapFile, int requiredWood, int requiredGold, boolean buildPeasants) {
+		this.name = name;
+		this.mapFile = mapFile;
+		this.requiredWood = requiredWood;
+		this.requiredGold = requiredGold;
+		this.buildPeasants = buildPeasants;
+	}
+
+	/**
+	 * @param spec
+	 *            file[:wood:gold:buildPeasants]
+	 * @return the scenario, the map isn't read yet
+	 * @throws IOException
+	 *             if the file can't be read or the goal is missing
+	 */
+	public static Scenario parse(String spec) throws IOException {
+		String[] parts = spec.trim().split(":");
+		File file = new File(parts[0]);
+
+		if (parts.length != 1 && parts.length != 4) {
+			throw new IOException("Expected file[:wood:gold:buildPeasants], got " + spec);
+		}
+
+		Document document;
+		try {
+			document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new IOException("Could not read " + file, e);
+		}
+
+		String mapFile = file.getPath();
+		List<String> arguments = new ArrayList<String>();
+
+		if (document.getDocumentElement().getTagName().equals("Configuration")) {
+			File configuredMap = new File(document.getElementsByTagName("Map").item(0).getTextContent().trim());
+
+			// the configurations name the map relative to wherever SEPIA was
+			// started from, and not always with the right case
+			if (!configuredMap.exists()) {
+				configuredMap = new File(file.getParentFile(), configuredMap.getName());
+			}
+
+			mapFile = configuredMap.getPath();
+			arguments = plannerArguments(document);
+		}
+
+		if (parts.length == 4) {
+			arguments.clear();
+			for (int i = 1; i < 4; i++) {
+				arguments.add(parts[i]);
+			}
+		}
+
+		if (arguments.size() < 3) {
+			throw new IOException("No goal for " + spec + ", expected file:wood:gold:buildPeasants");
+		}
+
+		String name = file.getName().replaceFirst("\\.xml$", "");
+		if (parts.length == 4) {
+			name += ":" + parts[1] + ":" + parts[2] + ":" + parts[3];
+		}
+
+		try {
+			return new Scenario(name, mapFile, Integer.parseInt(arguments.get(0).trim()),
+					Integer.parseInt(arguments.get(1).trim()), Boolean.parseBoolean(arguments.get(2).trim()));
+		} catch (NumberFormatException e) {
+			throw new IOException("Bad goal amounts in " + spec, e);
+		}
+	}
+
+	/**
+	 * @param configuration
+	 * @return the arguments given to the PlannerAgent, empty if it isn't run
+	 */
+	private static List<String> plannerArguments(Document configuration) {
+		List<String> arguments = new ArrayList<String>();
+		NodeList agents = configuration.getElementsByTagName("AgentClass");
+
+		for (int i = 0; i < agents.getLength(); i++) {
+			Element agent = (Element) agents.item(i);
+			String className = agent.getElementsByTagName("ClassName").item(0).getTextContent().trim();
+
+			if (className.equals(PlannerAgent.class.getName())) {
+				NodeList values = agent.getElementsByTagName("Argument");
+				for (int j = 0; j < values.getLength(); j++) {
+					arguments.add(values.item(j).getTextContent().trim());
+				}
+				break;
+			}
+		}
+
+		return arguments;
+	}
+
+	/**
+	 * @return the file the scenario was read from, with the goal if it was
+	 *         given
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public String getMapFile() {
+		return mapFile;
+	}
+
+	public int getRequiredWood() {
+		return requiredWood;
+	}
+
+	public int getRequiredGold() {
+		return requiredGold;
+	}
+
+	public boolean getBuildPeasants() {
+		return buildPeasants;
+	}
+
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,102 @@
+package edu.cwru.sepia.agent.planner;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The node and time budget of one search. Every search asks it before each
+ * expansion whether it may go on, and it keeps the state that got furthest
+ * so far, so a search that runs out of budget can still hand back a plan
+ * that gets part of the way.
+ *
+ * Furthest means the most of the goal's wood and gold gathered, counting
+ * nothing past the goal amounts. Ties go to the state with the least work
+ * left by the heuristic, then to the cheapest one.
+ *
+ * The counters are atomic so the workers of a parallel search can share one
+ * budget.
+ *
+ * @author Anna He
+ *
+ */
+class SearchBudget {
+
+	// most expansions, 0 for no limit
+	private final long maxNodes;
+	// System.nanoTime() at which the time is up, Long.MAX_VALUE for never
+	private final long deadline;
+	private final AtomicLong nodes = new AtomicLong();
+	private final AtomicReference<GameState> furthest = new AtomicReference<GameState>();
+
+	/**
+	 * Starts the clock
+	 *
+	 * @param maxNodes
+	 *            most states expanded, 0 for no limit
+	 * @param timeLimit
+	 *            milliseconds from now, 0 for no limit
+	 */
+	SearchBudget(long maxNodes, long timeLimit) {
+		this.maxNodes = maxNodes;
+		this.deadline = timeLimit > 0 ? System.nanoTime() + timeLimit * 1000000 : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Takes one expansion out of the budget
+	 *
+	 * @param state
+	 *            the state about to be expanded
+	 * @return null if it may be expanded, otherwise the budget that ran out,
+	 *         NODE_LIMIT or TIME_LIMIT
+	 */
+	PlanStatus spend(GameState state) {
+		offer(state);
+
+		if (maxNodes > 0 && nodes.incrementAndGet() > maxNodes) {
+			return PlanStatus.NODE_LIMIT;
+		}
+
+		if (deadline != Long.MAX_VALUE && System.nanoTime() > deadline) {
+			return PlanStatus.TIME_LIMIT;
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return the plan to the state that got furthest, empty if the search
+	 *         didn't get to expand anything
+	 */
+	PlanResult partial(PlanStatus status, SearchStatistics statistics) {
+		GameState state = furthest.get();
+		return new PlanResult(state == null ? null : Planner.getPath(state), state, statistics, status);
+	}
+
+	private void offer(GameState state) {
+		while (true) {
+			GameState current = furthest.get();
+			if (current != null && compare(current, state) <= 0) {
+				return;
+			}
+
+			if (furthest.compareAndSet(current, state)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return below 0 if a got further than b
+	 */
+	private static int compare(GameState a, GameState b) {
+		int result = Integer.compare(progress(b), progress(a));
+		if (result == 0) {
+			result = Double.compare(a.heuristic(), b.heuristic());
+		}
+		return result != 0 ? result : Integer.compare(a.getMyCost(), b.getMyCost());
+	}
+
+	private static int progress(GameState state) {
+		return Math.min(state.getMyWood(), state.getGoalWood()) + Math.min(state.getMyGold(), state.getGoalGold());
+	}
+}
@@ -0,0 +1,23 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * The searches a Planner can run, picked with search=name
+ * 
+ * @author Anna He
+ *
+ */
+public enum SearchMode {
+	// A* on the calling thread
+	ASTAR,
+	// hash distributed A* on searchThreads threads, see HashDistributedSearch
+	HDA,
+	// iterative deepening A*, memory grows with plan depth only, see
+	// IterativeDeepeningSearch
+	IDA,
+	// A* dropping the worst states beyond maxOpenStates, see
+	// MemoryBoundedSearch
+	SMA,
+	// weighted A* rounds with a falling weight, a plan fast and cheaper ones
+	// later, see AnytimeSearch
+	ANYTIME
+}
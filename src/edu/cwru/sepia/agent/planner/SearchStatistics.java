@@ -0,0 +1,124 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * Counters collected while searching for a plan. Used to compare the
+ * throughput of different versions of the planner on the same scenario.
+ *
+ * @author Anna He
+ *
+ */
+public class SearchStatistics {
+
+	private long startTime = 0;
+	private long endTime = 0;
+
+	// number of states popped off the open list
+	private long nodesExpanded = 0;
+	// number of successor states generated
+	private long nodesGenerated = 0;
+	// number of times a frontier state got a cheaper cost
+	private long decreasedKeys = 0;
+	// number of states dropped to stay within a memory bound
+	private long evicted = 0;
+	private int maxOpenListSize = 0;
+
+	public void start() {
+		startTime = System.nanoTime();
+		endTime = 0;
+	}
+
+	public void stop() {
+		endTime = System.nanoTime();
+	}
+
+	public void expanded() {
+		nodesExpanded++;
+	}
+
+	public void generated(int count) {
+		nodesGenerated += count;
+	}
+
+	public void decreasedKey() {
+		decreasedKeys++;
+	}
+
+	public void evicted() {
+		evicted++;
+	}
+
+	public void openListSize(int size) {
+		if (size > maxOpenListSize) {
+			maxOpenListSize = size;
+		}
+	}
+
+	/**
+	 * Adds the counts of another search, like one worker of a parallel one.
+	 * The open list sizes are added too, as the workers' lists are separate.
+	 *
+	 * @param other
+	 */
+	public void add(SearchStatistics other) {
+		nodesExpanded += other.nodesExpanded;
+		nodesGenerated += other.nodesGenerated;
+		decreasedKeys += other.decreasedKeys;
+		evicted += other.evicted;
+		maxOpenListSize += other.maxOpenListSize;
+	}
+
+	/**
+	 * @return a copy of the counts so far, stopped now if still running
+	 */
+	public SearchStatistics snapshot() {
+		SearchStatistics copy = new SearchStatistics();
+		copy.add(this);
+		copy.maxOpenListSize = maxOpenListSize;
+		copy.startTime = startTime;
+		copy.endTime = endTime == 0 ? System.nanoTime() : endTime;
+		return copy;
+	}
+
+	public long getNodesExpanded() {
+		return nodesExpanded;
+	}
+
+	public long getNodesGenerated() {
+		return nodesGenerated;
+	}
+
+	public long getDecreasedKeys() {
+		return decreasedKeys;
+	}
+
+	public long getEvicted() {
+		return evicted;
+	}
+
+	public int getMaxOpenListSize() {
+		return maxOpenListSize;
+	}
+
+	/**
+	 * @return time spent searching in milliseconds
+	 */
+	public double getElapsedMillis() {
+		long end = endTime == 0 ? System.nanoTime() : endTime;
+		return (end - startTime) / 1e6;
+	}
+
+	/**
+	 * @return how many states were popped off the open list per second
+	 */
+	public double getExpansionsPerSecond() {
+		double seconds = getElapsedMillis() / 1000.0;
+		return seconds > 0 ? nodesExpanded / seconds : 0;
+	}
+
+	public String toString() {
+		return String.format(
+				"[SEARCH: expanded=%d, generated=%d, decreasedKeys=%d, %smaxOpen=%d, time=%.1fms, %.0f pops/s]",
+				nodesExpanded, nodesGenerated, decreasedKeys, evicted > 0 ? "evicted=" + evicted + ", " : "",
+				maxOpenListSize, getElapsedMillis(), getExpansionsPerSecond());
+	}
+}
@@ -13,7 +13,7 @@ public class TownHall extends MapObject {
 	private Unit.UnitView unit;
 
 	public TownHall(boolean isEmpty, Unit.UnitView unit, Position pos) {
-		super(isEmpty, "TOWNHALL", pos);
+		super(isEmpty, MapObjectType.TOWNHALL, pos);
 
 		this.unit = unit;
 	}
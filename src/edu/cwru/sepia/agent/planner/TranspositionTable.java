@@ -0,0 +1,92 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * A fixed size table of the states a search has reached, and how cheaply,
+ * used by IterativeDeepeningSearch and MemoryBoundedSearch to skip states they
+ * have already searched below. It never grows: every state has one slot picked
+ * by its Zobrist hash, and a new state simply takes over the slot from
+ * whatever was there. Forgetting a state only costs searching it again.
+ *
+ * Only the 64 bit hash is stored, not the state, so the table holds no
+ * references and keeps nothing alive. Two different states with the same
+ * hash would be taken for each other; with 64 bit hashes that is unlikely
+ * enough to ignore.
+ *
+ * @author Anna He
+ *
+ */
+class TranspositionTable {
+
+	private final long[] hashes;
+	private final int[] costs;
+	// iteration the entry was made in, 0 for an empty slot
+	private final int[] iterations;
+	private final int mask;
+
+	/**
+	 * @param capacity
+	 *            most states remembered, rounded up to a power of two
+	 */
+	TranspositionTable(int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		this.hashes = new long[size];
+		this.costs = new int[size];
+		this.iterations = new int[size];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Checks a state against the table, and remembers it unless it was there
+	 * already as cheaply
+	 *
+	 * @param hash
+	 *            the state's Zobrist hash
+	 * @param cost
+	 *            the cost the state was reached with
+	 * @param iteration
+	 *            the deepening iteration, entries of other iterations are
+	 *            ignored since their bound was different. Must be above 0.
+	 * @return true if the state was reached before in this iteration at most
+	 *         as cheaply
+	 */
+	boolean seenAsCheaply(long hash, int cost, int iteration) {
+		if (contains(hash, cost, iteration)) {
+			return true;
+		}
+
+		put(hash, cost, iteration);
+		return false;
+	}
+
+	/**
+	 * @return true if the state is in the table for this iteration with a cost
+	 *         at most the given one
+	 */
+	boolean contains(long hash, int cost, int iteration) {
+		int slot = slot(hash);
+		return iterations[slot] == iteration && hashes[slot] == hash && costs[slot] <= cost;
+	}
+
+	void put(long hash, int cost, int iteration) {
+		int slot = slot(hash);
+		hashes[slot] = hash;
+		costs[slot] = cost;
+		iterations[slot] = iteration;
+	}
+
+	/**
+	 * Forgets the state, if it is still in the table
+	 *
+	 * @param hash
+	 */
+	void remove(long hash) {
+		int slot = slot(hash);
+		if (hashes[slot] == hash) {
+			iterations[slot] = 0;
+		}
+	}
+
+	private int slot(long hash) {
+		return (int) ((hash * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+	}
+}
@@ -0,0 +1,78 @@
+package edu.cwru.sepia.agent.planner;
+
+/**
+ * Zobrist style keys for the parts of a GameState that equals() looks at.
+ * The hash of a state is the sum (mod 2^64) of the keys of all of its parts,
+ * so when an action changes one part the child's hash is the parent's hash
+ * minus the old key plus the new key. That makes hashing a child O(1) no
+ * matter how many resources are on the map.
+ *
+ * Peasants are keyed by what they are doing and not by their unit id, so two
+ * states that only differ in which peasant is which hash the same. A sum is
+ * used instead of the usual XOR because two identical peasants would cancel
+ * each other out in an XOR.
+ *
+ * Instead of tables of random numbers the keys come from running the (table,
+ * index, value) triple through the splitmix64 finalizer. The keys look just as
+ * random, work for any map size or resource amount, and need no memory.
+ *
+ * @author Anna He
+ *
+ */
+public final class ZobristHash {
+
+	private static final int PEASANT = 1;
+	private static final int PEASANT_COUNT = 3;
+	private static final int RESOURCE = 4;
+	private static final int WOOD = 5;
+	private static final int GOLD = 6;
+
+	private ZobristHash() {
+	}
+
+	/**
+	 * Key for one peasant: where it is and what it carries
+	 *
+	 * @param x
+	 * @param y
+	 * @param cargo
+	 *            0 if empty, otherwise the GameState cargo code
+	 * @param amount
+	 * @return
+	 */
+	public static long peasant(int x, int y, int cargo, int amount) {
+		return key(PEASANT, (cargo << 24) ^ amount, (x << 16) ^ (y & 0xFFFF));
+	}
+
+	public static long peasantCount(int count) {
+		return key(PEASANT_COUNT, 0, count);
+	}
+
+	/**
+	 * Key for a forest or goldmine with the given amount left. An exhausted
+	 * resource contributes nothing.
+	 *
+	 * @param resourceID
+	 * @param amount
+	 * @return
+	 */
+	public static long resource(int resourceID, int amount) {
+		return amount <= 0 ? 0 : key(RESOURCE, resourceID, amount);
+	}
+
+	public static long wood(int amount) {
+		return key(WOOD, 0, amount);
+	}
+
+	public static long gold(int amount) {
+		return key(GOLD, 0, amount);
+	}
+
+	private static long key(int table, int index, int value) {
+		long z = ((long) table << 56) ^ ((long) index << 32) ^ (value & 0xFFFFFFFFL);
+		z += 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -1,6 +1,7 @@
 package edu.cwru.sepia.agent.planner.actions;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import edu.cwru.sepia.agent.planner.GameState;
 import edu.cwru.sepia.agent.planner.Peasant;
@@ -21,7 +22,7 @@ public class CreateAction implements StripsAction {
 	@Override
 	public boolean preconditionsMet(GameState state) {
 		return state.isBuildPeasants() && state.getMyGold() >= 400
-				&& ((state.getTotalFoodOnMap() - state.getPeasants().size()) > 0);
+				&& ((state.getTotalFoodOnMap() - state.getPeasantCount()) > 0);
 	}
 
 	/**
@@ -30,39 +31,27 @@ public class CreateAction implements StripsAction {
 	@Override
 	public GameState apply(GameState state) {
 
-		ArrayList<Peasant> newPeasants = new ArrayList<Peasant>();
-
-		for (Peasant statePeasant : state.getPeasants()) {
-			newPeasants.add(new Peasant(statePeasant));
-		}
+		ArrayList<StripsAction> action = new ArrayList<StripsAction>();
+		action.add(this);
+		GameState newState = new GameState(state, action, 1);
 
 		// Puts the peasant at a location. This is approximate since we won't
 		// know where SEPIA places the peasant
-		for (Position pos : state.getTownHall().getPosition().getAdjacentPositions()) {
-
-			if (pos.inBounds(state.getState().getXExtent(), state.getState().getYExtent())
-					&& !state.getState().isResourceAt(pos.x, pos.y)) {
-				this.createdPeasant = new Peasant(null, 0, new Position(pos.x, pos.y), state.getPeasants().size());
-				newPeasants.add(createdPeasant);
-				break;
-			}
+		List<Position> freeCells = state.getMap().getTownHallFreeCells();
+		if (!freeCells.isEmpty()) {
+			Position pos = freeCells.get(0);
+			int unitID = newState.addPeasant(pos.x, pos.y);
+			this.createdPeasant = new Peasant(null, 0, pos, unitID);
 		}
 
-		ArrayList<StripsAction> action = new ArrayList<StripsAction>();
-		action.add(this);
-		GameState newState = new GameState(action, state, newPeasants, state.getForests(), state.getGoldMines(),
-				state.getTownHall(), state.getGoalWood(), state.getGoalGold(), state.getMyWood(), state.getMyGold(),
-				state.getPlayerNum(), state.getState(), 1, state.getTotalWoodOnMap(), state.getTotalGoldOnMap(),
-				state.isBuildPeasants(), state.getTotalFoodOnMap());
-
 		// Creating a peasant costs 400 gold, so we deduct
 		newState.setMyGold(newState.getMyGold() - 400);
 		return newState;
 	}
 
 	@Override
-	public String getAction() {
-		return "CREATE";
+	public StripsActionType getAction() {
+		return StripsActionType.CREATE;
 	}
 
 	public String toString() {
@@ -2,12 +2,11 @@ package edu.cwru.sepia.agent.planner.actions;
 
 import java.util.ArrayList;
 
-import edu.cwru.sepia.agent.planner.Forest;
 import edu.cwru.sepia.agent.planner.GameState;
-import edu.cwru.sepia.agent.planner.GoldMine;
 import edu.cwru.sepia.agent.planner.MapObject;
+import edu.cwru.sepia.agent.planner.MapObjectType;
 import edu.cwru.sepia.agent.planner.Peasant;
-import edu.cwru.sepia.agent.planner.Position;
+import edu.cwru.sepia.agent.planner.PlanningMap;
 import edu.cwru.sepia.environment.model.state.ResourceType;
 
 public class HarvestAction implements StripsAction {
@@ -26,8 +25,8 @@ public class HarvestAction implements StripsAction {
 	 */
 	@Override
 	public boolean preconditionsMet(GameState state) {
-		return resource.getPosition().isAdjacent(peasant.getPosition())
-				&& (peasant.isNextToGoldMine() || peasant.isNextToForest()) && peasant.getIsEmpty();
+		return resource.getPosition().isAdjacent(peasant.getPosition()) && peasant.getIsEmpty()
+				&& state.getResourceAmount(PlanningMap.getResourceID(resource)) > 0;
 	}
 
 	/**
@@ -36,107 +35,25 @@ public class HarvestAction implements StripsAction {
 	@Override
 	public GameState apply(GameState state) {
 
-		Position resourcePos = resource.getPosition();
-		ArrayList<Peasant> newPeasants = new ArrayList<Peasant>();
-
-		/**
-		 * Finds the peasant that is to carry out the harvest action and changes
-		 * the resource type its holding and the quantity
-		 */
-		for (Peasant statePeasant : state.getPeasants()) {
-			if (statePeasant.getUnitID() != this.peasant.getUnitID()) {
-				newPeasants.add(statePeasant);
-			} else {
-				Peasant newPeasant = new Peasant(statePeasant.getHoldingObject(), statePeasant.getResourceQuantity(),
-						new Position(statePeasant.getPosition().x, statePeasant.getPosition().y),
-						statePeasant.getUnitID());
-				newPeasant.setNextToForest(statePeasant.isNextToForest());
-				newPeasant.setNextToGoldMine(statePeasant.isNextToGoldMine());
-				newPeasant.setNextToTownHall(statePeasant.isNextToTownHall());
-
-				if (resource.getName().equals("FOREST")) {
-					newPeasant.setHoldingObject(ResourceType.WOOD);
-					newPeasant.setIsEmpty(false);
-					newPeasant.setResourceQuantity(100);
-				} else if (resource.getName().equals("GOLDMINE")) {
-					newPeasant.setHoldingObject(ResourceType.GOLD);
-					newPeasant.setIsEmpty(false);
-					newPeasant.setResourceQuantity(100);
-				}
-
-				newPeasants.add(newPeasant);
-			}
-		}
-
-		// clones the forests
-		ArrayList<Forest> newForests = new ArrayList<Forest>();
-
-		for (Forest forest : state.getForests()) {
-			Forest newForest = new Forest(false, forest.getResourceQuantity(),
-					new Position(forest.getPosition().x, forest.getPosition().y));
-
-			newForests.add(newForest);
-		}
-
-		// clones the goldmines
-		ArrayList<GoldMine> newGoldMines = new ArrayList<GoldMine>();
-
-		for (GoldMine goldmine : state.getGoldMines()) {
-			GoldMine newGoldMine = new GoldMine(false, goldmine.getResourceQuantity(),
-					new Position(goldmine.getPosition().x, goldmine.getPosition().y));
-
-			newGoldMines.add(newGoldMine);
-		}
+		int resourceID = PlanningMap.getResourceID(resource);
 
 		ArrayList<StripsAction> action = new ArrayList<StripsAction>();
 		action.add(this);
-		GameState newState = new GameState(action, state, newPeasants, newForests, newGoldMines, state.getTownHall(),
-				state.getGoalWood(), state.getGoalGold(), state.getMyWood(), state.getMyGold(), state.getPlayerNum(),
-				state.getState(), 1, state.getTotalWoodOnMap(), state.getTotalGoldOnMap(), state.isBuildPeasants(),
-				state.getTotalFoodOnMap());
-
-		// if we are harvesting from a forest, we want to deduct 100 from the
-		// resource
-		if (resource.getName().equals("FOREST")) {
-			for (Forest forest : newState.getForests()) {
-				if (forest.getPosition().x == resourcePos.x && forest.getPosition().y == resourcePos.y) {
-
-					forest.setResourceQuantity(forest.getResourceQuantity() - 100);
-
-					// If the amount of wood at that forest is less than 0, then
-					// we don't consider it anymore
-					if (forest.getResourceQuantity() <= 0) {
-						ArrayList<Forest> newForest = newState.getForests();
-						newForest.remove(forest);
-						newState.setForests(newForest);
-					}
-
-					break;
-				}
-			}
-		}
+		GameState newState = new GameState(state, action, 1);
 
-		// if we are harvesting from a goldmine, we want to deduct 100 from the
-		// resource
-		else if (resource.getName().equals("GOLDMINE")) {
-			for (GoldMine goldmine : newState.getGoldMines()) {
-				if (goldmine.getPosition().x == resourcePos.x && goldmine.getPosition().y == resourcePos.y) {
-
-					goldmine.setResourceQuantity(goldmine.getResourceQuantity() - 100);
-
-					// If the amount of wood at that forest is less than 0, then
-					// we don't consider it anymore
-					if (goldmine.getResourceQuantity() <= 0) {
-						ArrayList<GoldMine> newGoldMine = newState.getGoldMines();
-						newGoldMine.remove(goldmine);
-						newState.setGoldMines(newGoldMine);
-					}
-
-					break;
-				}
-			}
+		/**
+		 * Changes the resource type the peasant is holding and the quantity
+		 */
+		if (resource.getType() == MapObjectType.FOREST) {
+			newState.setPeasantCargo(peasant.getUnitID(), ResourceType.WOOD, 100);
+		} else if (resource.getType() == MapObjectType.GOLDMINE) {
+			newState.setPeasantCargo(peasant.getUnitID(), ResourceType.GOLD, 100);
 		}
 
+		// we want to deduct 100 from the resource. Once it reaches 0 the
+		// resource is no longer considered
+		newState.setResourceAmount(resourceID, state.getResourceAmount(resourceID) - 100);
+
 		return newState;
 	}
 
@@ -153,8 +70,8 @@ public class HarvestAction implements StripsAction {
 	}
 
 	@Override
-	public String getAction() {
-		return "HARVEST";
+	public StripsActionType getAction() {
+		return StripsActionType.HARVEST;
 	}
 
 	public String toString() {
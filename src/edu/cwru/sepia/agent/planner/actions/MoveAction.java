@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import edu.cwru.sepia.agent.planner.GameState;
 import edu.cwru.sepia.agent.planner.MapObject;
 import edu.cwru.sepia.agent.planner.Peasant;
+import edu.cwru.sepia.agent.planner.PlanningMap;
 import edu.cwru.sepia.agent.planner.Position;
 
 public class MoveAction implements StripsAction {
@@ -21,12 +22,14 @@ public class MoveAction implements StripsAction {
 	}
 
 	/**
-	 * You should always be able to move. It may not be the action with the
-	 * highest utility, but you always have the option to
+	 * You can move to anything there is a path to. It may not be the action
+	 * with the highest utility, but you always have the option to
 	 */
 	@Override
 	public boolean preconditionsMet(GameState state) {
-		return true;
+		PlanningMap map = state.getMap();
+		Position from = peasant.getPosition();
+		return map.getApproachTable().getApproachTile(from.x, from.y, map.getTargetIndex(mapObject)) != null;
 	}
 
 	/**
@@ -35,65 +38,23 @@ public class MoveAction implements StripsAction {
 	@Override
 	public GameState apply(GameState state) {
 
-		Position bestNeighbor = new Position(Integer.MAX_VALUE, Integer.MAX_VALUE);
-
-		for (Position pos : moveToThisLocation.getAdjacentPositions()) {
-
-			if (pos.inBounds(state.getState().getXExtent(), state.getState().getYExtent())
-					&& !state.getState().isResourceAt(pos.x, pos.y)) {
-				if (peasant.getPosition().euclideanDistance(pos) < peasant.getPosition()
-						.euclideanDistance(bestNeighbor)) {
-					bestNeighbor = new Position(pos.x, pos.y);
-				}
-			}
-		}
-
-		this.bestPosition = bestNeighbor;
-		int cost = 0;
-
-		// only need to clone peasant because that's the only thing changing
-		ArrayList<Peasant> newPeasants = new ArrayList<Peasant>();
-
-		for (Peasant statePeasant : state.getPeasants()) {
-			if (statePeasant.getUnitID() != this.peasant.getUnitID()) {
-				newPeasants.add(statePeasant);
-			} else {
-				Peasant newPeasant = new Peasant(statePeasant.getHoldingObject(), statePeasant.getResourceQuantity(),
-						new Position(statePeasant.getPosition().x, statePeasant.getPosition().y),
-						statePeasant.getUnitID());
-				newPeasant.setNextToForest(statePeasant.isNextToForest());
-				newPeasant.setNextToGoldMine(statePeasant.isNextToGoldMine());
-				newPeasant.setNextToTownHall(statePeasant.isNextToTownHall());
-
-				newPeasant.setPosition(bestNeighbor);
-				newPeasant.resetNextTo();
-
-				String type = mapObject.getName();
-
-				switch (type) {
-				case "FOREST":
-					newPeasant.setNextToForest(true);
-					break;
-				case "GOLDMINE":
-					newPeasant.setNextToGoldMine(true);
-					break;
-				case "TOWNHALL":
-					newPeasant.setNextToTownHall(true);
-					break;
-				}
-
-				cost = (int) newPeasant.getPosition().euclideanDistance(bestNeighbor);
-
-				newPeasants.add(newPeasant);
-			}
-		}
+		// the nearest free tile next to the target and how many steps it
+		// takes to walk there, looked up in the table the map built up front
+		PlanningMap map = state.getMap();
+		Position from = peasant.getPosition();
+		int target = map.getTargetIndex(mapObject);
+		Position newPosition = map.getApproachTable().getApproachTile(from.x, from.y, target);
+		int cost = map.getApproachTable().getTravelCost(from.x, from.y, target);
+
+		this.bestPosition = newPosition;
+
+		// only the peasant changes, so the new state shares everything else
+		// with the old one
 
 		ArrayList<StripsAction> action = new ArrayList<StripsAction>();
 		action.add(this);
-		GameState newState = new GameState(action, state, newPeasants, state.getForests(), state.getGoldMines(),
-				state.getTownHall(), state.getGoalWood(), state.getGoalGold(), state.getMyWood(), state.getMyGold(),
-				state.getPlayerNum(), state.getState(), cost, state.getTotalWoodOnMap(), state.getTotalGoldOnMap(),
-				state.isBuildPeasants(), state.getTotalFoodOnMap());
+		GameState newState = new GameState(state, action, cost);
+		newState.setPeasantPosition(peasant.getUnitID(), newPosition.x, newPosition.y);
 
 		return newState;
 	}
@@ -102,6 +63,10 @@ public class MoveAction implements StripsAction {
 		return peasant;
 	}
 
+	public Position getMoveToThisLocation() {
+		return moveToThisLocation;
+	}
+
 	public Position getBestPosition() {
 		return bestPosition;
 	}
@@ -111,8 +76,8 @@ public class MoveAction implements StripsAction {
 	}
 
 	@Override
-	public String getAction() {
-		return "MOVE";
+	public StripsActionType getAction() {
+		return StripsActionType.MOVE;
 	}
 
 	public MapObject getMapObject() {
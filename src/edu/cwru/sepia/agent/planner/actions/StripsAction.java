@@ -52,7 +52,7 @@ public interface StripsAction {
 	 * 
 	 * @return
 	 */
-	public String getAction();
+	public StripsActionType getAction();
 
 	/**
 	 * Gets the peasant involved in the action
@@ -0,0 +1,15 @@
+package edu.cwru.sepia.agent.planner.actions;
+
+/**
+ * The kinds of STRIPS action a peasant can do. Dispatching on these is a
+ * switch on the ordinal, so nothing on the search path compares strings.
+ * 
+ * @author Anna He
+ *
+ */
+public enum StripsActionType {
+	MOVE, HARVEST, DEPOSIT, CREATE,
+	// a TripAction, harvest and deposit round trips standing for the actions
+	// above
+	TRIP
+}
@@ -0,0 +1,178 @@
+package edu.cwru.sepia.agent.planner.actions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.cwru.sepia.agent.planner.ApproachTable;
+import edu.cwru.sepia.agent.planner.GameState;
+import edu.cwru.sepia.agent.planner.MapObject;
+import edu.cwru.sepia.agent.planner.MapObjectType;
+import edu.cwru.sepia.agent.planner.Peasant;
+import edu.cwru.sepia.agent.planner.PlanningMap;
+import edu.cwru.sepia.agent.planner.Position;
+import edu.cwru.sepia.environment.model.state.ResourceType;
+
+/**
+ * A macro action: an empty peasant makes one or more round trips between a
+ * resource and the townhall. Each trip is a move to the resource, a harvest,
+ * a move back to the townhall and a deposit, so a plan made of trips is about
+ * a quarter as deep as the same plan in single actions.
+ *
+ * apply does all the trips at once. The cost and the effects are the sum of
+ * the actions it stands for: the walks come from the map's ApproachTable, the
+ * harvests and deposits take 1 each, and every trip brings home 100. The
+ * PEAgent turns it back into those actions when it gets to it, see expand.
+ *
+ * @author Anna He
+ *
+ */
+public class TripAction implements StripsAction {
+
+	private Peasant peasant;
+	private MapObject resource;
+	private MapObject townHall;
+	private int trips;
+
+	// where the peasant harvests and deposits on every trip, filled in by
+	// apply
+	private Position[] resourceTiles;
+	private Position[] townHallTiles;
+
+	/**
+	 * @param peasant
+	 *            an empty peasant
+	 * @param resource
+	 *            a forest or goldmine
+	 * @param townHall
+	 * @param trips
+	 *            how many round trips, at least 1
+	 */
+	public TripAction(Peasant peasant, MapObject resource, MapObject townHall, int trips) {
+		this.peasant = peasant;
+		this.resource = resource;
+		this.townHall = townHall;
+		this.trips = trips;
+	}
+
+	/**
+	 * The peasant has to be empty, the resource has to last for every trip
+	 * (each harvest only needs something left, like HarvestAction) and both
+	 * ends have to be reachable.
+	 */
+	@Override
+	public boolean preconditionsMet(GameState state) {
+		PlanningMap map = state.getMap();
+		ApproachTable table = map.getApproachTable();
+		Position from = peasant.getPosition();
+		int target = map.getTargetIndex(resource);
+		int resourceID = PlanningMap.getResourceID(resource);
+
+		if (!peasant.getIsEmpty() || state.getResourceAmount(resourceID) <= 100 * (trips - 1)) {
+			return false;
+		}
+
+		Position resourceTile = table.getApproachTile(from.x, from.y, target);
+		return resourceTile != null
+				&& table.getApproachTile(resourceTile.x, resourceTile.y, table.getTownHallTarget()) != null;
+	}
+
+	/**
+	 * Does all the trips, leaving the peasant empty next to the townhall
+	 */
+	@Override
+	public GameState apply(GameState state) {
+		PlanningMap map = state.getMap();
+		ApproachTable table = map.getApproachTable();
+		int target = map.getTargetIndex(resource);
+		int townHallTarget = table.getTownHallTarget();
+		int resourceID = PlanningMap.getResourceID(resource);
+
+		resourceTiles = new Position[trips];
+		townHallTiles = new Position[trips];
+
+		Position at = peasant.getPosition();
+		int cost = 0;
+
+		for (int i = 0; i < trips; i++) {
+			resourceTiles[i] = table.getApproachTile(at.x, at.y, target);
+			cost += table.getTravelCost(at.x, at.y, target) + 1;
+			at = resourceTiles[i];
+
+			townHallTiles[i] = table.getApproachTile(at.x, at.y, townHallTarget);
+			cost += table.getTravelCost(at.x, at.y, townHallTarget) + 1;
+			at = townHallTiles[i];
+		}
+
+		ArrayList<StripsAction> action = new ArrayList<StripsAction>();
+		action.add(this);
+		GameState newState = new GameState(state, action, cost);
+
+		newState.setPeasantPosition(peasant.getUnitID(), at.x, at.y);
+		newState.setResourceAmount(resourceID, state.getResourceAmount(resourceID) - 100 * trips);
+
+		if (resource.getType() == MapObjectType.FOREST) {
+			newState.setMyWood(newState.getMyWood() + 100 * trips);
+		} else {
+			newState.setMyGold(newState.getMyGold() + 100 * trips);
+		}
+
+		return newState;
+	}
+
+	/**
+	 * @return the moves, harvests and deposits this trip stands for, in the
+	 *         order they are done. A walk of no steps is left out. Only
+	 *         meaningful after apply.
+	 */
+	public List<StripsAction> expand() {
+		List<StripsAction> actions = new ArrayList<StripsAction>();
+		ResourceType cargo = resource.getType() == MapObjectType.FOREST ? ResourceType.WOOD : ResourceType.GOLD;
+		int unitID = peasant.getUnitID();
+		Position at = peasant.getPosition();
+
+		for (int i = 0; i < trips; i++) {
+			if (!at.equals(resourceTiles[i])) {
+				MoveAction toResource = new MoveAction(new Peasant(null, 0, at, unitID), resource,
+						resource.getPosition());
+				toResource.setBestPosition(resourceTiles[i]);
+				actions.add(toResource);
+			}
+			actions.add(new HarvestAction(new Peasant(null, 0, resourceTiles[i], unitID), resource));
+
+			if (!resourceTiles[i].equals(townHallTiles[i])) {
+				Peasant carrying = new Peasant(cargo, 100, resourceTiles[i], unitID);
+				MoveAction toTownHall = new MoveAction(carrying, townHall, townHall.getPosition());
+				toTownHall.setBestPosition(townHallTiles[i]);
+				actions.add(toTownHall);
+			}
+			actions.add(new DepositAction(new Peasant(cargo, 100, townHallTiles[i], unitID)));
+
+			at = townHallTiles[i];
+		}
+
+		return actions;
+	}
+
+	@Override
+	public Peasant getPeasant() {
+		return peasant;
+	}
+
+	public MapObject getResource() {
+		return resource;
+	}
+
+	public int getTrips() {
+		return trips;
+	}
+
+	@Override
+	public StripsActionType getAction() {
+		return StripsActionType.TRIP;
+	}
+
+	public String toString() {
+		return "[" + " PEASANT ID: " + this.peasant.getUnitID() + ", TRIP x" + trips + " to "
+				+ resource.getPosition().toString() + "]";
+	}
+}